@@ -0,0 +1,61 @@
+package src;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.Color;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Obrót i przeliczenie macierzy widoku kamery, oraz pełna klatka ruchu kamery
+ * (obrót, nowa macierz projekcja * widok i rzutowanie wierzchołków sfery).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CameraBenchmark {
+    @Param({"16", "32", "64"})
+    public int bands;
+
+    private Camera camera;
+    private Renderer renderer;
+    private Mesh mesh;
+
+    @Setup
+    public void setUp() {
+        camera = new Camera(2.0f, 800, 600);
+        renderer = new Renderer(camera, null);
+        mesh = new Sphere(0.0f, 0.0f, 4.0f, 2.0f, bands, bands, Color.GRAY).getMesh();
+    }
+
+    @Benchmark
+    public Camera rotateCamera() {
+        camera.rotateCamera(1, 1, 0);
+        return camera;
+    }
+
+    @Benchmark
+    public Camera recalculateViewMatrix() {
+        camera.recalculateViewMatrix();
+        return camera;
+    }
+
+    @Benchmark
+    public VertexTransform rotateAndTransform() {
+        camera.rotateCamera(1, 0, 0);
+        renderer.beginFrame();
+        return renderer.transformMesh(mesh);
+    }
+}
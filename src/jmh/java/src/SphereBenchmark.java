@@ -0,0 +1,50 @@
+package src;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.awt.Color;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generowanie sfery: teselacja bez pamięci podręcznej, nowa sfera o teselacji już zapamiętanej
+ * oraz siatka zamieniona na obiekty {@link Face}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SphereBenchmark {
+    @Param({"16", "32", "64"})
+    public int latitudeBands;
+
+    @Param({"16", "32", "64"})
+    public int longitudeBands;
+
+    @Benchmark
+    public Mesh tessellate() {
+        SphereTessellation.clear();
+        return SphereTessellation.get(2.0f, latitudeBands, longitudeBands);
+    }
+
+    @Benchmark
+    public Mesh mesh() {
+        return new Sphere(0.0f, 0.0f, 4.0f, 2.0f, latitudeBands, longitudeBands, Color.GRAY).getMesh();
+    }
+
+    @Benchmark
+    public List<Face> faces() {
+        return new Sphere(0.0f, 0.0f, 4.0f, 2.0f, latitudeBands, longitudeBands, Color.GRAY).getFaces();
+    }
+}
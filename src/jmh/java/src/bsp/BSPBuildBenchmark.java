@@ -0,0 +1,54 @@
+package src.bsp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import src.Face;
+import src.Sphere;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Budowa drzewa BSP: sekwencyjna i równoległa, dla kilku nachodzących na siebie sfer
+ * (przecinające się sfery wymuszają podziały ścian).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BSPBuildBenchmark {
+    @Param({"16", "32"})
+    public int bands;
+
+    @Param({"false", "true"})
+    public boolean parallel;
+
+    private List<Face> faces;
+
+    @Setup
+    public void setUp() {
+        faces = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Sphere sphere = new Sphere(i * 0.8f, 0.0f, 4.0f, 1.5f, bands, bands, Color.GRAY);
+            faces.addAll(sphere.getFaces());
+        }
+    }
+
+    @Benchmark
+    public BSPTree build() {
+        return new BSPTree(faces, SplitterHeuristic.BALANCED, parallel);
+    }
+}
@@ -0,0 +1,88 @@
+package src.bsp;
+
+import org.ejml.simple.SimpleMatrix;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import src.Camera;
+import src.Face;
+import src.Renderer;
+import src.Sphere;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Przejście gotowego drzewa BSP z rysowaniem do obrazu poza ekranem:
+ * rekurencyjne {@link BSPNode#render} oraz płaskie {@link FlatBSPTree#render}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xss64m", "-Djava.awt.headless=true"})
+public class BSPTraversalBenchmark {
+    @Param({"16", "32"})
+    public int bands;
+
+    private BufferedImage image;
+    private Graphics2D graphics;
+    private Renderer renderer;
+    private BSPTree tree;
+    private FlatBSPTree flatTree;
+    private SimpleMatrix cameraPosition;
+
+    @Setup
+    public void setUp() {
+        List<Face> faces = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Sphere sphere = new Sphere(i * 0.8f, 0.0f, 4.0f, 1.5f, bands, bands, Color.GRAY);
+            faces.addAll(sphere.getFaces());
+        }
+
+        Camera camera = new Camera(2.0f, 800, 600);
+        image = new BufferedImage(800, 600, BufferedImage.TYPE_INT_RGB);
+        graphics = image.createGraphics();
+        renderer = new Renderer(camera, graphics);
+        tree = new BSPTree(faces);
+        flatTree = new FlatBSPTree(tree);
+        cameraPosition = camera.getCameraPosition();
+        renderer.beginFrame();
+    }
+
+    @TearDown
+    public void tearDown() {
+        graphics.dispose();
+    }
+
+    @Benchmark
+    public void recursive() {
+        tree.render(renderer, cameraPosition);
+    }
+
+    @Benchmark
+    public void flat() {
+        flatTree.render(renderer, (float) cameraPosition.get(0), (float) cameraPosition.get(1),
+                (float) cameraPosition.get(2));
+    }
+
+    @Benchmark
+    public void flatCulled() {
+        flatTree.render(renderer, (float) cameraPosition.get(0), (float) cameraPosition.get(1),
+                (float) cameraPosition.get(2), renderer.getFrustum(), true);
+    }
+}
@@ -0,0 +1,74 @@
+package src.bsp;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import src.Face;
+import src.Sphere;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Klasyfikacja i podział wszystkich ścian sfery względem płaszczyzny przechodzącej
+ * przez jej środek (około połowa ścian leży po każdej stronie, pas przy równiku jest dzielony).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PlaneBenchmark {
+    @Param({"16", "32", "64"})
+    public int bands;
+
+    private List<Face> faces;
+    private List<Face> spanningFaces;
+    private Plane plane;
+
+    private final List<Face> front = new ArrayList<>();
+    private final List<Face> back = new ArrayList<>();
+
+    @Setup
+    public void setUp() {
+        faces = new Sphere(0.0f, 0.0f, 4.0f, 1.5f, bands, bands, Color.GRAY).getFaces();
+        plane = new Plane(0.3f, 1.0f, 0.2f, -0.8f);
+
+        spanningFaces = new ArrayList<>();
+        for (Face face : faces) {
+            // 2: ściana przecina płaszczyznę
+            if (plane.classifyFace(face) == 2) {
+                spanningFaces.add(face);
+            }
+        }
+    }
+
+    @Benchmark
+    public void classifyFace(Blackhole blackhole) {
+        for (Face face : faces) {
+            blackhole.consume(plane.classifyFace(face));
+        }
+    }
+
+    @Benchmark
+    public int splitFace() {
+        front.clear();
+        back.clear();
+        for (Face face : spanningFaces) {
+            plane.splitFace(face, front, back);
+        }
+        return front.size() + back.size();
+    }
+}
@@ -0,0 +1,85 @@
+package src.lighting;
+
+import org.ejml.simple.SimpleMatrix;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import src.Face;
+import src.Mesh;
+import src.Sphere;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cieniowanie Phonga całej sfery: po jednej ścianie i świetle przez
+ * {@link Material#calculatePhongColor} oraz jednym przebiegiem {@link Material#shadeBatch}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MaterialBenchmark {
+    @Param({"16", "32", "64"})
+    public int bands;
+
+    @Param({"1", "16"})
+    public int lightCount;
+
+    private Material material;
+    private Mesh mesh;
+    private List<Face> faces;
+    private List<Light> lights;
+    private LightBuffer lightBuffer;
+    private SimpleMatrix cameraPosition;
+    private int[] colors;
+
+    @Setup
+    public void setUp() {
+        Sphere sphere = new Sphere(0.0f, 0.0f, 4.0f, 2.0f, bands, bands, Color.GRAY);
+        mesh = sphere.getMesh();
+        faces = sphere.getFaces();
+        material = new Material(0.2f, 0.7f, 0.5f, 32);
+        cameraPosition = new SimpleMatrix(3, 1, true, new float[]{0.0f, 0.0f, 0.0f});
+
+        lights = new ArrayList<>();
+        for (int i = 0; i < lightCount; i++) {
+            double angle = 2 * Math.PI * i / lightCount;
+            lights.add(new Light((float) (3 * Math.cos(angle)), 1.0f, (float) (4 + 3 * Math.sin(angle)),
+                    Color.WHITE, 1.0f, 0.2f));
+        }
+        lightBuffer = new LightBuffer();
+        lightBuffer.setMaterialResponse(material.getDirectResponse());
+        lightBuffer.update(lights);
+        colors = new int[mesh.getTriangleCount()];
+    }
+
+    @Benchmark
+    public void perFace(Blackhole blackhole) {
+        for (Face face : faces) {
+            for (Light light : lights) {
+                blackhole.consume(material.calculatePhongColor(face, cameraPosition, light));
+            }
+        }
+    }
+
+    @Benchmark
+    public int[] batch() {
+        material.shadeBatch(mesh.getNormals(), mesh.getCentroids(), null, 0, colors.length,
+                Color.GRAY.getRGB(), lightBuffer, 0.0f, 0.0f, 0.0f, colors);
+        return colors;
+    }
+}
@@ -1,47 +1,67 @@
 package src;
 
-import lombok.Data;
+import lombok.Getter;
 import org.ejml.simple.SimpleMatrix;
-import org.apache.commons.math3.complex.Quaternion;
 
-@Data
+import java.util.Arrays;
+
+/**
+ * Kamera przechowuje położenie w polach prymitywnych, a orientację jako jeden kwaternion
+ * jednostkowy (obrót z osi kamery do osi świata). Macierze widoku, projekcji i ich iloczyn
+ * są tablicami o stałym rozmiarze, przeliczanymi w miejscu dopiero przy odczycie po zmianie,
+ * więc ruch i obrót kamery nie alokują pamięci.
+ */
 public class Camera {
+    @Getter
     private float d = 5.0f;
+    @Getter
     private float d_step = 0.1f;
+    @Getter
     private float fov = 60.0f;
-    
+
+    @Getter
     private float widthToHeightRatio;
+    @Getter
     private int WIDTH;
+    @Getter
     private int HEIGHT;
-
-    private SimpleMatrix cameraPosition;
-    private SimpleMatrix cameraForward;
-    private SimpleMatrix cameraUp;
-    private SimpleMatrix cameraRight;
+    @Getter
     private float cameraStep = 0.2f;
 
-    private SimpleMatrix projectionMatrix;
-    private SimpleMatrix viewMatrix;
+    @Getter
+    private float positionX;
+    @Getter
+    private float positionY;
+    @Getter
+    private float positionZ;
+
+    // Orientacja (w, x, y, z)
+    private double orientationW = 1.0;
+    private double orientationX;
+    private double orientationY;
+    private double orientationZ;
+
+    // Osie kamery w przestrzeni świata: prawo, góra, przód (po 3 liczby)
+    private final float[] axes = new float[9];
+    // Macierze 4x4 zapisane wierszami
+    private final float[] view = new float[16];
+    private final float[] projection = new float[16];
+    private final float[] viewProjection = new float[16];
+    private final double[] product = new double[4];
+
+    private boolean axesDirty = true;
+    private boolean viewDirty = true;
+    private boolean projectionDirty = true;
+    private boolean viewProjectionDirty = true;
+    // Zwiększany przy każdej zmianie kamery
+    @Getter
+    private long revision;
 
     public Camera(float d, int width, int height) {
         this.d = d;
         this.WIDTH = width;
         this.HEIGHT = height;
         this.widthToHeightRatio = (float) width / (float) height;
-
-        this.cameraPosition = new SimpleMatrix(3, 1, true, new float[]{0.0f, 0.0f, 0.0f});
-        this.cameraForward = new SimpleMatrix(3, 1, true, new float[]{0.0f, 0.0f, 1.0f});
-        this.cameraUp = new SimpleMatrix(3, 1, true, new float[]{0.0f, 1.0f, 0.0f});
-        this.cameraRight = new SimpleMatrix(3, 1, true, new float[]{1.0f, 0.0f, 0.0f});
-
-        this.projectionMatrix = new SimpleMatrix(4, 4);
-
-        this.viewMatrix = SimpleMatrix.identity(4);
-        viewMatrix.set(0, 3, cameraPosition.get(0));
-        viewMatrix.set(1, 3, cameraPosition.get(1));
-        viewMatrix.set(2, 3, cameraPosition.get(2));
-
-        recalculateProjectionMatrix();
     }
 
     public void changeZoom(int value) {
@@ -50,173 +70,319 @@ public class Camera {
         } else if (value < 0) {
             fov = Math.min(fov + 5.0f, 120.0f);  // Max FOV: 120 stopni
         }
-        recalculateProjectionMatrix();
+        projectionChanged();
     }
-    
-    public void recalculateProjectionMatrix() {
-        projectionMatrix = new SimpleMatrix(4, 4);
 
+    /**
+     * Przelicza macierz projekcji od razu (zwykle dzieje się to leniwie przy odczycie).
+     */
+    public void recalculateProjectionMatrix() {
         float fovScale = (float) (Math.tan(Math.toRadians(fov) / 2) / Math.tan(Math.toRadians(60) / 2));
 
-        projectionMatrix.set(0, 0, 1.0f);
-        projectionMatrix.set(1, 1, 1.0f);
-        projectionMatrix.set(2, 2, 1.0f);
-        projectionMatrix.set(3, 2, fovScale / d);  // Współczynnik perspektywy
+        Arrays.fill(projection, 0.0f);
+        projection[0] = 1.0f;
+        projection[5] = 1.0f;
+        projection[10] = 1.0f;
+        projection[14] = fovScale / d;  // Współczynnik perspektywy (wiersz 3, kolumna 2)
+        projectionDirty = false;
     }
-    
-    public void recalculateViewMatrix() {
-        SimpleMatrix rotation = new SimpleMatrix(3, 3);
-
-        for (int i = 0; i < 3; i++) {
-            rotation.set(i, 0, cameraRight.get(i));
-            rotation.set(i, 1, cameraUp.get(i));
-            rotation.set(i, 2, cameraForward.get(i));
-        }
 
-        SimpleMatrix rotationTransposed = rotation.transpose();
-        SimpleMatrix translationPart = rotationTransposed.mult(cameraPosition).negative();
-        viewMatrix = SimpleMatrix.identity(4);
-
-        for (int i = 0; i < 3; i++) {
-            for (int j = 0; j < 3; j++) {
-                viewMatrix.set(i, j, rotationTransposed.get(i, j));
-            }
+    /**
+     * Przelicza macierz widoku od razu (zwykle dzieje się to leniwie przy odczycie).
+     */
+    public void recalculateViewMatrix() {
+        float[] a = getAxes();
+
+        // Wiersze macierzy obrotu widoku to osie kamery, przesunięcie to -R^T * położenie
+        for (int row = 0; row < 3; row++) {
+            float ax = a[row * 3], ay = a[row * 3 + 1], az = a[row * 3 + 2];
+            view[row * 4] = ax;
+            view[row * 4 + 1] = ay;
+            view[row * 4 + 2] = az;
+            view[row * 4 + 3] = -(ax * positionX + ay * positionY + az * positionZ);
         }
+        view[12] = 0.0f;
+        view[13] = 0.0f;
+        view[14] = 0.0f;
+        view[15] = 1.0f;
+        viewDirty = false;
+    }
 
-        for (int i = 0; i < 3; i++) {
-            viewMatrix.set(i, 3, translationPart.get(i));
+    /**
+     * Macierz widoku zapisana wierszami; tablica jest współdzielona i nie powinna być modyfikowana.
+     */
+    public float[] getView() {
+        if (viewDirty) {
+            recalculateViewMatrix();
         }
+        return view;
     }
 
-    public SimpleMatrix projectPoint(SimpleMatrix point) {
-        return projectionMatrix.mult(viewMatrix).mult(point);
+    public float[] getProjection() {
+        if (projectionDirty) {
+            recalculateProjectionMatrix();
+        }
+        return projection;
     }
 
-    public void moveCameraRight(int shift) {
-        SimpleMatrix displacement = cameraRight.scale(cameraStep);
-        if (shift > 0) {
-            cameraPosition = cameraPosition.plus(displacement);
-        } else {
-            cameraPosition = cameraPosition.minus(displacement);
+    /**
+     * Iloczyn projekcja * widok, liczony tylko wtedy, gdy kamera zmieniła się od ostatniego odczytu.
+     */
+    public float[] getViewProjection() {
+        if (viewProjectionDirty) {
+            float[] p = getProjection();
+            float[] v = getView();
+            for (int row = 0; row < 4; row++) {
+                for (int col = 0; col < 4; col++) {
+                    viewProjection[row * 4 + col] = p[row * 4] * v[col]
+                            + p[row * 4 + 1] * v[4 + col]
+                            + p[row * 4 + 2] * v[8 + col]
+                            + p[row * 4 + 3] * v[12 + col];
+                }
+            }
+            viewProjectionDirty = false;
         }
-        recalculateViewMatrix();
+        return viewProjection;
     }
 
-    public void moveCameraForward(int shift) {
-        SimpleMatrix displacement = cameraForward.scale(cameraStep);
-        if (shift > 0) {
-            cameraPosition = cameraPosition.plus(displacement);
-        } else {
-            cameraPosition = cameraPosition.minus(displacement);
-        }
-        recalculateViewMatrix();
+    /**
+     * Współczynnik perspektywy k: punkt kamery (x, y, z) ma w = k * z.
+     */
+    public float getPerspectiveFactor() {
+        return getProjection()[14];
     }
 
-    public void moveCameraUp(int shift) {
-        SimpleMatrix displacement = cameraUp.scale(cameraStep);
-        if (shift > 0) {
-            cameraPosition = cameraPosition.plus(displacement);
-        } else {
-            cameraPosition = cameraPosition.minus(displacement);
+    /**
+     * Osie kamery w przestrzeni świata: prawo (0..2), góra (3..5), przód (6..8).
+     */
+    public float[] getAxes() {
+        if (axesDirty) {
+            double w = orientationW, x = orientationX, y = orientationY, z = orientationZ;
+
+            axes[0] = (float) (1 - 2 * (y * y + z * z));
+            axes[1] = (float) (2 * (x * y + w * z));
+            axes[2] = (float) (2 * (x * z - w * y));
+
+            axes[3] = (float) (2 * (x * y - w * z));
+            axes[4] = (float) (1 - 2 * (x * x + z * z));
+            axes[5] = (float) (2 * (y * z + w * x));
+
+            axes[6] = (float) (2 * (x * z + w * y));
+            axes[7] = (float) (2 * (y * z - w * x));
+            axes[8] = (float) (1 - 2 * (x * x + y * y));
+            axesDirty = false;
         }
-        recalculateViewMatrix();
+        return axes;
     }
 
-    public void rotateCamera(int mouseX, int mouseY, int mouseZ) {
-        float angleX = mouseX * (float) Math.PI / 180.0f;
-        float angleY = mouseY * (float) Math.PI / 180.0f;
-        float angleZ = mouseZ * (float) Math.PI / 180.0f;
-
-        double[] axisX = { cameraRight.get(0), cameraRight.get(1), cameraRight.get(2) };
-        double[] axisY = { cameraUp.get(0), cameraUp.get(1), cameraUp.get(2) };
-        double[] axisZ = { cameraForward.get(0), cameraForward.get(1), cameraForward.get(2) };
-
-        Quaternion qx = createQuaternionFromAxisAngle(axisX, angleX);
-        Quaternion qy = createQuaternionFromAxisAngle(axisY, angleY);
-        Quaternion qz = createQuaternionFromAxisAngle(axisZ, angleZ);
-
-        Quaternion q = qy.multiply(qx).multiply(qz);
+    public void setPosition(float x, float y, float z) {
+        positionX = x;
+        positionY = y;
+        positionZ = z;
+        viewChanged();
+    }
 
-        double[] forwardRotated = rotateVectorByQuaternion(
-                new double[] { cameraForward.get(0), cameraForward.get(1), cameraForward.get(2) }, q);
-        double[] rightRotated = rotateVectorByQuaternion(
-                new double[] { cameraRight.get(0), cameraRight.get(1), cameraRight.get(2) }, q);
-        double[] upRotated = rotateVectorByQuaternion(
-                new double[] { cameraUp.get(0), cameraUp.get(1), cameraUp.get(2) }, q);
+    /**
+     * Kopia położenia kamery jako wektor 3x1.
+     */
+    public SimpleMatrix getCameraPosition() {
+        return new SimpleMatrix(3, 1, true, new float[]{positionX, positionY, positionZ});
+    }
 
-        cameraForward = new SimpleMatrix(3, 1, true, new float[] {
-                (float)forwardRotated[0], (float)forwardRotated[1], (float)forwardRotated[2]
-        });
-        cameraRight = new SimpleMatrix(3, 1, true, new float[] {
-                (float)rightRotated[0], (float)rightRotated[1], (float)rightRotated[2]
-        });
-        cameraUp = new SimpleMatrix(3, 1, true, new float[] {
-                (float)upRotated[0], (float)upRotated[1], (float)upRotated[2]
-        });
+    /**
+     * Kopia macierzy widoku.
+     */
+    public SimpleMatrix getViewMatrix() {
+        return new SimpleMatrix(4, 4, true, getView());
+    }
 
-        cameraForward = normalizeVector(cameraForward);
-        cameraUp = normalizeVector(cameraUp);
-        cameraRight = normalizeVector(cameraRight);
+    /**
+     * Kopia macierzy projekcji.
+     */
+    public SimpleMatrix getProjectionMatrix() {
+        return new SimpleMatrix(4, 4, true, getProjection());
+    }
 
-        cameraRight = crossProduct(cameraUp, cameraForward);
-        cameraRight = normalizeVector(cameraRight);
+    /**
+     * Ustawia kamerę w punkcie (x, y, z) patrzącą na punkt docelowy, z górą możliwie blisko osi Y świata.
+     */
+    public void lookAt(float x, float y, float z, float targetX, float targetY, float targetZ) {
+        double fx = targetX - x, fy = targetY - y, fz = targetZ - z;
+        double length = Math.sqrt(fx * fx + fy * fy + fz * fz);
+        if (length < 1e-6) {
+            throw new IllegalArgumentException("Camera target must differ from its position");
+        }
+        fx /= length;
+        fy /= length;
+        fz /= length;
+
+        // Prawo = góra świata x przód
+        double rx = fz, ry = 0, rz = -fx;
+        length = Math.sqrt(rx * rx + rz * rz);
+        if (length < 1e-6) {
+            // Patrzenie pionowo: oś Z świata zastępuje oś Y
+            rx = -fy;
+            ry = fx;
+            rz = 0;
+            length = Math.sqrt(rx * rx + ry * ry);
+        }
+        rx /= length;
+        ry /= length;
+        rz /= length;
 
-        cameraUp = crossProduct(cameraForward, cameraRight);
-        cameraUp = normalizeVector(cameraUp);
+        // Góra = przód x prawo
+        double ux = fy * rz - fz * ry;
+        double uy = fz * rx - fx * rz;
+        double uz = fx * ry - fy * rx;
 
-        recalculateViewMatrix();
+        setOrientationFromAxes(rx, ry, rz, ux, uy, uz, fx, fy, fz);
+        setPosition(x, y, z);
     }
 
-    private Quaternion createQuaternionFromAxisAngle(double[] axis, double angle) {
-        double length = Math.sqrt(axis[0] * axis[0] + axis[1] * axis[1] + axis[2] * axis[2]);
-        if (length > 1e-6) {
-            axis[0] /= length;
-            axis[1] /= length;
-            axis[2] /= length;
+    /**
+     * Kwaternion z macierzy obrotu, której kolumnami są osie kamery.
+     */
+    private void setOrientationFromAxes(double rx, double ry, double rz,
+                                        double ux, double uy, double uz,
+                                        double fx, double fy, double fz) {
+        double trace = rx + uy + fz;
+        if (trace > 0) {
+            double s = Math.sqrt(trace + 1.0) * 2;
+            orientationW = 0.25 * s;
+            orientationX = (uz - fy) / s;
+            orientationY = (fx - rz) / s;
+            orientationZ = (ry - ux) / s;
+        } else if (rx > uy && rx > fz) {
+            double s = Math.sqrt(1.0 + rx - uy - fz) * 2;
+            orientationW = (uz - fy) / s;
+            orientationX = 0.25 * s;
+            orientationY = (ux + ry) / s;
+            orientationZ = (fx + rz) / s;
+        } else if (uy > fz) {
+            double s = Math.sqrt(1.0 + uy - rx - fz) * 2;
+            orientationW = (fx - rz) / s;
+            orientationX = (ux + ry) / s;
+            orientationY = 0.25 * s;
+            orientationZ = (fy + uz) / s;
+        } else {
+            double s = Math.sqrt(1.0 + fz - rx - uy) * 2;
+            orientationW = (ry - ux) / s;
+            orientationX = (fx + rz) / s;
+            orientationY = (fy + uz) / s;
+            orientationZ = 0.25 * s;
         }
+        normalizeOrientation();
+        orientationChanged();
+    }
 
-        double halfAngle = angle / 2.0;
-        double sinHalfAngle = Math.sin(halfAngle);
+    public SimpleMatrix projectPoint(SimpleMatrix point) {
+        float[] m = getViewProjection();
+        SimpleMatrix result = new SimpleMatrix(4, 1);
+        for (int row = 0; row < 4; row++) {
+            double value = 0;
+            for (int col = 0; col < 4; col++) {
+                value += m[row * 4 + col] * point.get(col);
+            }
+            result.set(row, value);
+        }
+        return result;
+    }
 
-        double w = Math.cos(halfAngle);
-        double x = axis[0] * sinHalfAngle;
-        double y = axis[1] * sinHalfAngle;
-        double z = axis[2] * sinHalfAngle;
+    public void moveCameraRight(int shift) {
+        move(0, shift);
+    }
 
-        return new Quaternion(w, x, y, z);
+    public void moveCameraForward(int shift) {
+        move(6, shift);
     }
 
-    private double[] rotateVectorByQuaternion(double[] v, Quaternion q) {
-        Quaternion vq = new Quaternion(0, v[0], v[1], v[2]);
-        Quaternion qConj = q.getConjugate();
+    public void moveCameraUp(int shift) {
+        move(3, shift);
+    }
 
-        // q * vq * q^-1
-        Quaternion rotated = q.multiply(vq).multiply(qConj);
+    /**
+     * Przesuwa kamerę wzdłuż jej osi o podane odległości.
+     */
+    public void translate(float right, float up, float forward) {
+        float[] a = getAxes();
+        positionX += a[0] * right + a[3] * up + a[6] * forward;
+        positionY += a[1] * right + a[4] * up + a[7] * forward;
+        positionZ += a[2] * right + a[5] * up + a[8] * forward;
+        viewChanged();
+    }
 
-        return new double[] { rotated.getQ1(), rotated.getQ2(), rotated.getQ3() };
+    private void move(int axis, int shift) {
+        float[] a = getAxes();
+        float step = shift > 0 ? cameraStep : -cameraStep;
+        positionX += a[axis] * step;
+        positionY += a[axis + 1] * step;
+        positionZ += a[axis + 2] * step;
+        viewChanged();
     }
 
-    private SimpleMatrix crossProduct(SimpleMatrix a, SimpleMatrix b) {
-        SimpleMatrix result = new SimpleMatrix(3, 1);
+    /**
+     * Obraca kamerę o podane kąty (w stopniach) wokół jej własnych osi: prawej, górnej i przedniej.
+     * Obrót złożony qy * qx * qz w osiach kamery jest dopisywany z prawej strony do orientacji.
+     */
+    public void rotateCamera(int mouseX, int mouseY, int mouseZ) {
+        float angleX = mouseX * (float) Math.PI / 180.0f;
+        float angleY = mouseY * (float) Math.PI / 180.0f;
+        float angleZ = mouseZ * (float) Math.PI / 180.0f;
 
-        result.set(0, a.get(1) * b.get(2) - a.get(2) * b.get(1));
-        result.set(1, a.get(2) * b.get(0) - a.get(0) * b.get(2));
-        result.set(2, a.get(0) * b.get(1) - a.get(1) * b.get(0));
+        double sx = Math.sin(angleX / 2.0), cx = Math.cos(angleX / 2.0);
+        double sy = Math.sin(angleY / 2.0), cy = Math.cos(angleY / 2.0);
+        double sz = Math.sin(angleZ / 2.0), cz = Math.cos(angleZ / 2.0);
+
+        // qy * qx
+        multiply(cy, 0, sy, 0, cx, sx, 0, 0);
+        // (qy * qx) * qz
+        multiply(product[0], product[1], product[2], product[3], cz, 0, 0, sz);
+        // orientacja * obrót
+        multiply(orientationW, orientationX, orientationY, orientationZ,
+                product[0], product[1], product[2], product[3]);
+
+        orientationW = product[0];
+        orientationX = product[1];
+        orientationY = product[2];
+        orientationZ = product[3];
+        normalizeOrientation();
+        orientationChanged();
+    }
 
-        return result;
+    /**
+     * Iloczyn Hamiltona a * b zapisany w {@code product} jako (w, x, y, z).
+     */
+    private void multiply(double aw, double ax, double ay, double az,
+                          double bw, double bx, double by, double bz) {
+        product[0] = aw * bw - ax * bx - ay * by - az * bz;
+        product[1] = aw * bx + ax * bw + ay * bz - az * by;
+        product[2] = aw * by - ax * bz + ay * bw + az * bx;
+        product[3] = aw * bz + ax * by - ay * bx + az * bw;
     }
 
-    private SimpleMatrix normalizeVector(SimpleMatrix vector) {
-        float length = (float) Math.sqrt(
-                vector.get(0) * vector.get(0) +
-                        vector.get(1) * vector.get(1) +
-                        vector.get(2) * vector.get(2)
-        );
+    private void normalizeOrientation() {
+        double length = Math.sqrt(orientationW * orientationW + orientationX * orientationX
+                + orientationY * orientationY + orientationZ * orientationZ);
+        orientationW /= length;
+        orientationX /= length;
+        orientationY /= length;
+        orientationZ /= length;
+    }
 
-        if (length < 1e-6f) {
-            return vector;
-        }
+    private void orientationChanged() {
+        axesDirty = true;
+        viewChanged();
+    }
+
+    private void viewChanged() {
+        viewDirty = true;
+        viewProjectionDirty = true;
+        revision++;
+    }
 
-        return vector.scale(1.0f / length);
+    private void projectionChanged() {
+        projectionDirty = true;
+        viewProjectionDirty = true;
+        revision++;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,69 @@
+package src;
+
+/**
+ * Zbiera zmiany kamery z kolejnych zdarzeń klawiatury (kroki przesunięcia, kąty obrotu
+ * i kroki przybliżenia) i stosuje je razem na początku następnej klatki. Niezależnie od liczby
+ * zdarzeń klatka przelicza macierz widoku raz. Zdarzenia mogą przychodzić z innego wątku niż klatka.
+ */
+public class CameraInput {
+    private int moveRight;
+    private int moveUp;
+    private int moveForward;
+    private int rotateX;
+    private int rotateY;
+    private int rotateZ;
+    private int zoom;
+
+    public synchronized void move(int right, int up, int forward) {
+        moveRight += right;
+        moveUp += up;
+        moveForward += forward;
+    }
+
+    /**
+     * Kąty w stopniach, jak w {@link Camera#rotateCamera(int, int, int)}.
+     */
+    public synchronized void rotate(int x, int y, int z) {
+        rotateX += x;
+        rotateY += y;
+        rotateZ += z;
+    }
+
+    public synchronized void zoom(int steps) {
+        zoom += steps;
+    }
+
+    public synchronized boolean isEmpty() {
+        return moveRight == 0 && moveUp == 0 && moveForward == 0
+                && rotateX == 0 && rotateY == 0 && rotateZ == 0 && zoom == 0;
+    }
+
+    /**
+     * Stosuje zebrane zmiany jako jedną transakcję i zeruje akumulator: najpierw przesunięcie
+     * wzdłuż osi kamery sprzed obrotu, potem obrót, na końcu przybliżenie.
+     *
+     * @return true, gdy kamera się zmieniła
+     */
+    public synchronized boolean apply(Camera camera) {
+        if (isEmpty()) {
+            return false;
+        }
+
+        float step = camera.getCameraStep();
+        if (moveRight != 0 || moveUp != 0 || moveForward != 0) {
+            camera.translate(moveRight * step, moveUp * step, moveForward * step);
+        }
+        if (rotateX != 0 || rotateY != 0 || rotateZ != 0) {
+            camera.rotateCamera(rotateX, rotateY, rotateZ);
+        }
+        // Pole widzenia jest ograniczane po każdym kroku, więc kroki są stosowane pojedynczo
+        for (int i = 0; i < Math.abs(zoom); i++) {
+            camera.changeZoom(zoom);
+        }
+
+        moveRight = moveUp = moveForward = 0;
+        rotateX = rotateY = rotateZ = 0;
+        zoom = 0;
+        return true;
+    }
+}
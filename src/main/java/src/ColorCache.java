@@ -0,0 +1,28 @@
+package src;
+
+import java.awt.Color;
+
+/**
+ * Zamienia kolory ARGB na obiekty {@link Color} potrzebne w {@link java.awt.Graphics}.
+ * Pamięć podręczna jest mapowana bezpośrednio: kolor trafia do jednego gniazda wyznaczonego
+ * przez skrót, a nowy obiekt powstaje tylko wtedy, gdy gniazdo zajmuje inny kolor.
+ */
+public class ColorCache {
+    private static final int SIZE = 4096;
+
+    private final int[] keys = new int[SIZE];
+    private final Color[] colors = new Color[SIZE];
+
+    public Color get(int argb) {
+        int hash = argb * 0x9E3779B9;
+        int slot = (hash ^ (hash >>> 16)) & (SIZE - 1);
+
+        Color color = colors[slot];
+        if (color == null || keys[slot] != argb) {
+            color = new Color(argb, true);
+            colors[slot] = color;
+            keys[slot] = argb;
+        }
+        return color;
+    }
+}
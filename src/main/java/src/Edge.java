@@ -12,4 +12,9 @@ public class Edge {
         this.start = new SimpleMatrix(3, 1, true, new float[]{x1, y1, z1});
         this.end = new SimpleMatrix(3, 1, true, new float[]{x2, y2, z2});
     }
+
+    public Edge(SimpleMatrix start, SimpleMatrix end) {
+        this.start = start;
+        this.end = end;
+    }
 }
\ No newline at end of file
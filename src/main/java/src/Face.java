@@ -1,16 +1,142 @@
 package src;
 
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import org.ejml.simple.SimpleMatrix;
+
 import java.awt.*;
 
 @Data
 public class Face extends Shape {
-    private final Color color;
+    // Kolor i materiał należą do obiektu, więc ich zmiana nie wymaga przebudowy ścian
+    private final Surface surface;
+
+    // Trójkąt siatki, z którego powstała ściana (null dla ścian powstałych z podziału)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private Mesh sourceMesh;
+    private int sourceTriangle = -1;
+
+    // Normalna (zgodna z kierunkiem obiegu wierzchołków) i środek ściany, liczone raz przy tworzeniu
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private final float[] normal = new float[3];
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private final float[] centroid = new float[3];
 
     public Face(float[] vertices, Color color) {
+        this(vertices, new Surface(color));
+    }
+
+    public Face(float[] vertices, Surface surface) {
+        super();
+        this.surface = surface;
+        createFaceFromVertices(vertices);
+        computeNormalAndCentroid();
+    }
+
+    public Face(SimpleMatrix[] vertices, Color color) {
+        this(vertices, new Surface(color));
+    }
+
+    public Face(SimpleMatrix[] vertices, Surface surface) {
         super();
-        this.color = color;
+        this.surface = surface;
         createFaceFromVertices(vertices);
+        computeNormalAndCentroid();
+    }
+
+    /**
+     * Ściana trójkąta siatki: normalna i środek są kopiowane z atrybutów siatki.
+     */
+    public Face(SimpleMatrix[] vertices, Surface surface, Mesh mesh, int triangle) {
+        super();
+        this.surface = surface;
+        this.sourceMesh = mesh;
+        this.sourceTriangle = triangle;
+        createFaceFromVertices(vertices);
+
+        System.arraycopy(mesh.getNormals(), triangle * 3, normal, 0, 3);
+        System.arraycopy(mesh.getCentroids(), triangle * 3, centroid, 0, 3);
+    }
+
+    private void createFaceFromVertices(SimpleMatrix[] vertices) {
+        if (vertices.length != 4) {
+            throw new IllegalArgumentException("A face must have exactly 4 vertices");
+        }
+
+        // Krawędzie współdzielą macierze wierzchołków zamiast je kopiować
+        for (int i = 0; i < 4; i++) {
+            addEdge(new Edge(vertices[i], vertices[(i + 1) % 4]));
+        }
+    }
+
+    public Color getColor() {
+        return surface.getColor();
+    }
+
+    public float getNormalX() {
+        return normal[0];
+    }
+
+    public float getNormalY() {
+        return normal[1];
+    }
+
+    public float getNormalZ() {
+        return normal[2];
+    }
+
+    public float getCentroidX() {
+        return centroid[0];
+    }
+
+    public float getCentroidY() {
+        return centroid[1];
+    }
+
+    public float getCentroidZ() {
+        return centroid[2];
+    }
+
+    private static boolean samePoint(SimpleMatrix a, SimpleMatrix b) {
+        return a == b || (a.get(0) == b.get(0) && a.get(1) == b.get(1) && a.get(2) == b.get(2));
+    }
+
+    private void computeNormalAndCentroid() {
+        SimpleMatrix p1 = edges.get(0).getStart();
+        SimpleMatrix p2 = edges.get(1).getStart();
+        SimpleMatrix p3 = edges.get(2).getStart();
+
+        float ux = (float) (p2.get(0) - p1.get(0));
+        float uy = (float) (p2.get(1) - p1.get(1));
+        float uz = (float) (p2.get(2) - p1.get(2));
+        float vx = (float) (p3.get(0) - p1.get(0));
+        float vy = (float) (p3.get(1) - p1.get(1));
+        float vz = (float) (p3.get(2) - p1.get(2));
+
+        Mesh.normalizedCross(ux, uy, uz, vx, vy, vz, normal, 0);
+
+        // Trójkąt ma powtórzony wierzchołek, który nie może przesuwać środka
+        int distinct = 0;
+        for (int i = 0; i < edges.size(); i++) {
+            SimpleMatrix vertex = edges.get(i).getStart();
+            if (i > 0 && samePoint(vertex, edges.get(i - 1).getStart())) {
+                continue;
+            }
+            if (i == edges.size() - 1 && samePoint(vertex, p1)) {
+                continue;
+            }
+            centroid[0] += (float) vertex.get(0);
+            centroid[1] += (float) vertex.get(1);
+            centroid[2] += (float) vertex.get(2);
+            distinct++;
+        }
+        centroid[0] /= distinct;
+        centroid[1] /= distinct;
+        centroid[2] /= distinct;
     }
 
     private void createFaceFromVertices(float[] vertices) {
@@ -18,24 +144,14 @@ public class Face extends Shape {
             throw new IllegalArgumentException("A face must have exactly 4 vertices (12 coordinates)");
         }
 
-        addEdge(new Edge(
-                vertices[0], vertices[1], vertices[2],  // v1
-                vertices[3], vertices[4], vertices[5]   // v2
-        ));
-
-        addEdge(new Edge(
-                vertices[3], vertices[4], vertices[5],  // v2
-                vertices[6], vertices[7], vertices[8]   // v3
-        ));
-
-        addEdge(new Edge(
-                vertices[6], vertices[7], vertices[8],  // v3
-                vertices[9], vertices[10], vertices[11] // v4
-        ));
-
-        addEdge(new Edge(
-                vertices[9], vertices[10], vertices[11], // v4
-                vertices[0], vertices[1], vertices[2]    // v1
-        ));
+        SimpleMatrix v1 = new SimpleMatrix(3, 1, true, new float[]{vertices[0], vertices[1], vertices[2]});
+        SimpleMatrix v2 = new SimpleMatrix(3, 1, true, new float[]{vertices[3], vertices[4], vertices[5]});
+        SimpleMatrix v3 = new SimpleMatrix(3, 1, true, new float[]{vertices[6], vertices[7], vertices[8]});
+        SimpleMatrix v4 = new SimpleMatrix(3, 1, true, new float[]{vertices[9], vertices[10], vertices[11]});
+
+        addEdge(new Edge(v1, v2));
+        addEdge(new Edge(v2, v3));
+        addEdge(new Edge(v3, v4));
+        addEdge(new Edge(v4, v1));
     }
 }
\ No newline at end of file
@@ -0,0 +1,307 @@
+package src;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Pomiary czasu etapów renderowania i liczniki ścian dla kolejnych klatek.
+ * Czasy są wyłączne: etap rozpoczęty wewnątrz innego wstrzymuje pomiar zewnętrznego,
+ * więc suma etapów nie liczy niczego dwa razy. Ostatnie {@code window} klatek jest
+ * przechowywanych w buforze cyklicznym, z którego liczone są percentyle; każda zakończona
+ * klatka może być też dopisywana jako wiersz CSV.
+ *
+ * <p>Pomiary zapisuje wątek renderujący; odczyty ({@link #percentile}, {@link #getLastCount})
+ * są synchronizowane z zamknięciem klatki i mogą pochodzić z innego wątku.
+ */
+public class FrameMetrics {
+    public enum Stage {
+        BSP_BUILD("build"),
+        TRAVERSAL("traversal"),
+        VERTEX_TRANSFORM("transform"),
+        LIGHTING("lighting"),
+        POLYGON_FILL("fill");
+
+        private final String label;
+
+        Stage(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    public enum Counter {
+        FACES("faces"),
+        SPLIT_FACES("split"),
+        CULLED_FACES("culled"),
+        CULLED_OBJECTS("culledObjects");
+
+        private final String label;
+
+        Counter(String label) {
+            this.label = label;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+    }
+
+    public static final int DEFAULT_WINDOW = 120;
+
+    private static final Stage[] STAGES = Stage.values();
+    private static final Counter[] COUNTERS = Counter.values();
+
+    private final int window;
+    private boolean enabled = true;
+
+    // Bieżąca klatka; pomiary sprzed beginFrame (np. budowa drzewa) trafiają do najbliższej klatki
+    private final long[] stageNanos = new long[STAGES.length];
+    private final int[] counts = new int[COUNTERS.length];
+    private Stage[] activeStages = new Stage[8];
+    private int depth;
+    private long stageTimestamp;
+    private long frameStart = -1;
+
+    // Historia: [etap][klatka], czas całej klatki i liczniki
+    private final long[][] stageHistory;
+    private final long[] frameHistory;
+    private final int[][] countHistory;
+    private int historySize;
+    private int historyNext;
+    private long frameCount;
+    private final long[] sortScratch;
+
+    private Writer csv;
+
+    public FrameMetrics() {
+        this(DEFAULT_WINDOW);
+    }
+
+    public FrameMetrics(int window) {
+        if (window <= 0) {
+            throw new IllegalArgumentException("Metrics window must be positive");
+        }
+
+        this.window = window;
+        this.stageHistory = new long[STAGES.length][window];
+        this.frameHistory = new long[window];
+        this.countHistory = new int[COUNTERS.length][window];
+        this.sortScratch = new long[window];
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Otwiera klatkę. Etapy pozostawione otwarte (np. przez wyjątek) są zamykane bez doliczania czasu,
+     * a częściowe pomiary klatki, której nie zamknięto przez {@link #endFrame()}, są odrzucane.
+     */
+    public void beginFrame() {
+        depth = 0;
+        if (frameStart >= 0) {
+            Arrays.fill(stageNanos, 0);
+            Arrays.fill(counts, 0);
+        }
+        if (enabled) {
+            frameStart = System.nanoTime();
+        }
+    }
+
+    public void begin(Stage stage) {
+        if (!enabled) {
+            return;
+        }
+
+        long now = System.nanoTime();
+        if (depth > 0) {
+            stageNanos[activeStages[depth - 1].ordinal()] += now - stageTimestamp;
+        }
+        if (depth == activeStages.length) {
+            activeStages = Arrays.copyOf(activeStages, depth * 2);
+        }
+        activeStages[depth++] = stage;
+        stageTimestamp = now;
+    }
+
+    public void end(Stage stage) {
+        if (!enabled) {
+            return;
+        }
+        if (depth == 0 || activeStages[depth - 1] != stage) {
+            throw new IllegalStateException("Stage " + stage + " is not the innermost active stage");
+        }
+
+        long now = System.nanoTime();
+        stageNanos[stage.ordinal()] += now - stageTimestamp;
+        depth--;
+        stageTimestamp = now;
+    }
+
+    public void add(Counter counter, int value) {
+        if (enabled) {
+            counts[counter.ordinal()] += value;
+        }
+    }
+
+    /**
+     * Zamyka klatkę: zapisuje ją w historii i w CSV, po czym zeruje pomiary.
+     */
+    public synchronized void endFrame() {
+        if (!enabled || frameStart < 0) {
+            return;
+        }
+
+        long frameNanos = System.nanoTime() - frameStart;
+        frameStart = -1;
+
+        frameHistory[historyNext] = frameNanos;
+        for (int s = 0; s < STAGES.length; s++) {
+            stageHistory[s][historyNext] = stageNanos[s];
+        }
+        for (int c = 0; c < COUNTERS.length; c++) {
+            countHistory[c][historyNext] = counts[c];
+        }
+        historyNext = (historyNext + 1) % window;
+        historySize = Math.min(historySize + 1, window);
+
+        if (csv != null) {
+            writeCsvRow(frameNanos);
+        }
+        frameCount++;
+
+        Arrays.fill(stageNanos, 0);
+        Arrays.fill(counts, 0);
+    }
+
+    /**
+     * Percentyl (0..100) czasu etapu z ostatnich klatek, w milisekundach.
+     */
+    public synchronized double percentile(Stage stage, double percentile) {
+        return percentileMillis(stageHistory[stage.ordinal()], percentile);
+    }
+
+    /**
+     * Percentyl (0..100) czasu całej klatki z ostatnich klatek, w milisekundach.
+     */
+    public synchronized double framePercentile(double percentile) {
+        return percentileMillis(frameHistory, percentile);
+    }
+
+    public synchronized int getLastCount(Counter counter) {
+        if (historySize == 0) {
+            return 0;
+        }
+        return countHistory[counter.ordinal()][(historyNext - 1 + window) % window];
+    }
+
+    public synchronized long getFrameCount() {
+        return frameCount;
+    }
+
+    private double percentileMillis(long[] history, double percentile) {
+        if (historySize == 0) {
+            return 0;
+        }
+
+        // Historia jest zapełniana od indeksu 0, więc pierwsze historySize elementów to ostatnie klatki
+        System.arraycopy(history, 0, sortScratch, 0, historySize);
+        Arrays.sort(sortScratch, 0, historySize);
+        int rank = (int) Math.ceil(percentile / 100.0 * historySize) - 1;
+        rank = Math.max(0, Math.min(historySize - 1, rank));
+        return sortScratch[rank] / 1_000_000.0;
+    }
+
+    /**
+     * Rozpoczyna dopisywanie zakończonych klatek do {@code writer} jako CSV (z nagłówkiem).
+     * Wywołujący odpowiada za zamknięcie strumienia po {@link #stopCsv()}.
+     */
+    public synchronized void startCsv(Writer writer) {
+        StringBuilder header = new StringBuilder("frame,frame_ms");
+        for (Stage stage : STAGES) {
+            header.append(',').append(stage.name().toLowerCase(Locale.ROOT)).append("_ms");
+        }
+        for (Counter counter : COUNTERS) {
+            header.append(',').append(counter.name().toLowerCase(Locale.ROOT));
+        }
+
+        try {
+            writer.write(header.append('\n').toString());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.csv = writer;
+    }
+
+    public synchronized void stopCsv() {
+        if (csv == null) {
+            return;
+        }
+        try {
+            csv.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        } finally {
+            csv = null;
+        }
+    }
+
+    public synchronized boolean isRecordingCsv() {
+        return csv != null;
+    }
+
+    private void writeCsvRow(long frameNanos) {
+        StringBuilder row = new StringBuilder();
+        row.append(frameCount).append(',').append(formatMillis(frameNanos));
+        for (long nanos : stageNanos) {
+            row.append(',').append(formatMillis(nanos));
+        }
+        for (int count : counts) {
+            row.append(',').append(count);
+        }
+
+        try {
+            csv.write(row.append('\n').toString());
+        } catch (IOException e) {
+            csv = null;
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String formatMillis(long nanos) {
+        return String.format(Locale.ROOT, "%.3f", nanos / 1_000_000.0);
+    }
+
+    /**
+     * Podsumowanie do nakładki: mediana i 95. percentyl klatki oraz mediany etapów.
+     */
+    public synchronized String summary() {
+        StringBuilder text = new StringBuilder(String.format(Locale.ROOT, "frame p50=%.2fms p95=%.2fms |",
+                framePercentile(50), framePercentile(95)));
+        for (Stage stage : STAGES) {
+            text.append(String.format(Locale.ROOT, " %s=%.2f", stage.getLabel(), percentile(stage, 50)));
+        }
+        return text.toString();
+    }
+
+    public synchronized String countSummary() {
+        StringBuilder text = new StringBuilder();
+        for (Counter counter : COUNTERS) {
+            if (text.length() > 0) {
+                text.append("  ");
+            }
+            text.append(counter.getLabel()).append('=').append(getLastCount(counter));
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,110 @@
+package src;
+
+import lombok.Getter;
+
+/**
+ * Ostrosłup widzenia kamery w przestrzeni świata: płaszczyzny lewa, prawa, dolna, górna
+ * i bliska (z = 0 w przestrzeni kamery). Każda płaszczyzna jest zapisana jako (a, b, c, d)
+ * z normalną jednostkową,
+ * a punkt p jest po stronie widocznej, gdy a*x + b*y + c*z + d >= 0.
+ */
+@Getter
+public class Frustum {
+    public static final int PLANE_COUNT = 5;
+
+    private final float[] planes = new float[PLANE_COUNT * 4];
+
+    /**
+     * Wyznacza płaszczyzny z bieżącego położenia, orientacji i pola widzenia kamery.
+     */
+    public void update(Camera camera) {
+        // Punkt (x, y, z) kamery trafia na ekran, gdy |x| <= aspect * k * z oraz |y| <= k * z,
+        // gdzie k to współczynnik perspektywy z macierzy projekcji
+        float k = camera.getPerspectiveFactor();
+        float aspect = (float) camera.getWIDTH() / camera.getHEIGHT();
+
+        // Osie kamery: prawo (0..2), góra (3..5), przód (6..8)
+        float[] axes = camera.getAxes();
+        float x = camera.getPositionX();
+        float y = camera.getPositionY();
+        float z = camera.getPositionZ();
+
+        setPlane(0, 1, 0, aspect * k, axes, x, y, z);   // lewa
+        setPlane(1, -1, 0, aspect * k, axes, x, y, z);  // prawa
+        setPlane(2, 0, 1, k, axes, x, y, z);            // dolna
+        setPlane(3, 0, -1, k, axes, x, y, z);           // górna
+        setPlane(4, 0, 0, 1, axes, x, y, z);            // bliska
+    }
+
+    private void setPlane(int index, float vx, float vy, float vz, float[] axes, float x, float y, float z) {
+        // Normalna z przestrzeni kamery przeniesiona do przestrzeni świata
+        float a = vx * axes[0] + vy * axes[3] + vz * axes[6];
+        float b = vx * axes[1] + vy * axes[4] + vz * axes[7];
+        float c = vx * axes[2] + vy * axes[5] + vz * axes[8];
+        float length = (float) Math.sqrt(a * a + b * b + c * c);
+        a /= length;
+        b /= length;
+        c /= length;
+        float d = -(a * x + b * y + c * z);
+
+        int p = index * 4;
+        planes[p] = a;
+        planes[p + 1] = b;
+        planes[p + 2] = c;
+        planes[p + 3] = d;
+    }
+
+    /**
+     * @return false, gdy prostopadłościan leży w całości poza ostrosłupem
+     */
+    public boolean intersectsBox(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        for (int i = 0; i < PLANE_COUNT; i++) {
+            int p = i * 4;
+            float a = planes[p], b = planes[p + 1], c = planes[p + 2];
+
+            // Wierzchołek prostopadłościanu najdalej w kierunku normalnej
+            float x = a >= 0 ? maxX : minX;
+            float y = b >= 0 ? maxY : minY;
+            float z = c >= 0 ? maxZ : minZ;
+
+            if (a * x + b * y + c * z + planes[p + 3] < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return true, gdy prostopadłościan leży w całości wewnątrz ostrosłupa
+     */
+    public boolean containsBox(float minX, float minY, float minZ, float maxX, float maxY, float maxZ) {
+        for (int i = 0; i < PLANE_COUNT; i++) {
+            int p = i * 4;
+            float a = planes[p], b = planes[p + 1], c = planes[p + 2];
+
+            // Wierzchołek prostopadłościanu najdalej w kierunku przeciwnym do normalnej
+            float x = a >= 0 ? minX : maxX;
+            float y = b >= 0 ? minY : maxY;
+            float z = c >= 0 ? minZ : maxZ;
+
+            if (a * x + b * y + c * z + planes[p + 3] < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * @return false, gdy kula leży w całości poza ostrosłupem
+     */
+    public boolean intersectsSphere(float x, float y, float z, float radius) {
+        for (int i = 0; i < PLANE_COUNT; i++) {
+            int p = i * 4;
+
+            if (planes[p] * x + planes[p + 1] * y + planes[p + 2] * z + planes[p + 3] < -radius) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,107 @@
+package src;
+
+import lombok.Getter;
+
+/**
+ * Obiekt sceny rysowany ze współdzielonej siatki: własne są tylko przekształcenie i wygląd.
+ * Siatka jest w przestrzeni obiektu i nie jest kopiowana - {@link Renderer#drawInstance(Instance)}
+ * przekształca jej wierzchołki w każdej klatce, więc tysiące instancji zajmują tyle pamięci,
+ * co jedna siatka i kilkanaście liczb na obiekt.
+ */
+@Getter
+public class Instance implements SceneObject {
+    private final Mesh mesh;
+    private final Surface surface;
+    // Macierz modelu 3x4 zapisana wierszami: [r00 r01 r02 tx | r10 r11 r12 ty | r20 r21 r22 tz]
+    private final float[] transform = {
+            1, 0, 0, 0,
+            0, 1, 0, 0,
+            0, 0, 1, 0
+    };
+    // Zwiększana przy każdej zmianie przekształcenia
+    private long revision;
+
+    public Instance(Mesh mesh, Surface surface) {
+        this.mesh = mesh;
+        this.surface = surface;
+    }
+
+    /**
+     * Instancja przesunięta do (x, y, z) i jednorodnie przeskalowana.
+     */
+    public Instance(Mesh mesh, Surface surface, float x, float y, float z, float scale) {
+        this(mesh, surface);
+        setTransform(x, y, z, scale);
+    }
+
+    /**
+     * @param matrix macierz 3x4 zapisana wierszami (12 elementów)
+     */
+    public void setTransform(float[] matrix) {
+        if (matrix.length != transform.length) {
+            throw new IllegalArgumentException("Transform must be a 3x4 matrix (12 elements)");
+        }
+        System.arraycopy(matrix, 0, transform, 0, transform.length);
+        revision++;
+    }
+
+    public void setTransform(float x, float y, float z, float scale) {
+        transform[0] = scale;
+        transform[1] = 0;
+        transform[2] = 0;
+        transform[3] = x;
+        transform[4] = 0;
+        transform[5] = scale;
+        transform[6] = 0;
+        transform[7] = y;
+        transform[8] = 0;
+        transform[9] = 0;
+        transform[10] = scale;
+        transform[11] = z;
+        revision++;
+    }
+
+    public void translate(float dx, float dy, float dz) {
+        transform[3] += dx;
+        transform[7] += dy;
+        transform[11] += dz;
+        revision++;
+    }
+
+    /**
+     * Kula otaczająca siatki przekształcona macierzą modelu; promień jest skalowany najdłuższą
+     * kolumną części 3x3, więc obejmuje obiekt także przy skalowaniu niejednorodnym.
+     */
+    @Override
+    public void getBoundingSphere(float[] out, int offset) {
+        float[] sphere = mesh.getBoundingSphere();
+        float[] m = transform;
+        float x = sphere[0], y = sphere[1], z = sphere[2];
+
+        float scaleX = m[0] * m[0] + m[4] * m[4] + m[8] * m[8];
+        float scaleY = m[1] * m[1] + m[5] * m[5] + m[9] * m[9];
+        float scaleZ = m[2] * m[2] + m[6] * m[6] + m[10] * m[10];
+
+        out[offset] = m[0] * x + m[1] * y + m[2] * z + m[3];
+        out[offset + 1] = m[4] * x + m[5] * y + m[6] * z + m[7];
+        out[offset + 2] = m[8] * x + m[9] * y + m[10] * z + m[11];
+        out[offset + 3] = sphere[3] * (float) Math.sqrt(Math.max(scaleX, Math.max(scaleY, scaleZ)));
+    }
+
+    @Override
+    public void draw(Renderer renderer) {
+        renderer.drawInstance(this);
+    }
+
+    public float getX() {
+        return transform[3];
+    }
+
+    public float getY() {
+        return transform[7];
+    }
+
+    public float getZ() {
+        return transform[11];
+    }
+}
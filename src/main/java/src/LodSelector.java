@@ -0,0 +1,72 @@
+package src;
+
+/**
+ * Wybór poziomu szczegółowości sfery na podstawie jej promienia na ekranie. Poziom jest
+ * wystarczający, gdy krawędź pasa długości ma na ekranie najwyżej {@code edgePixels} pikseli;
+ * wybierany jest najgrubszy wystarczający poziom.
+ *
+ * <p>Histereza: zmiana na poziom grubszy wymaga promienia mniejszego od progu o ułamek
+ * {@code hysteresis}, a powrót na drobniejszy - większego o tyle samo, więc sfera w pobliżu
+ * progu nie przełącza się co klatkę.
+ */
+public class LodSelector {
+    private static final double TWO_PI = 2 * Math.PI;
+
+    private float edgePixels;
+    private float hysteresis;
+
+    public LodSelector() {
+        this(8.0f, 0.2f);
+    }
+
+    public LodSelector(float edgePixels, float hysteresis) {
+        setEdgePixels(edgePixels);
+        setHysteresis(hysteresis);
+    }
+
+    /**
+     * @param radiusPixels promień sfery na ekranie ({@link Float#POSITIVE_INFINITY}, gdy kamera jest w jej pobliżu)
+     * @param currentLevel poziom z poprzedniej klatki
+     */
+    public int select(Sphere sphere, float radiusPixels, int currentLevel) {
+        int maxLevel = sphere.getLodCount() - 1;
+        int level = Math.max(0, Math.min(maxLevel, currentLevel));
+
+        while (level < maxLevel && radiusPixels < limit(sphere, level + 1) * (1 - hysteresis)) {
+            level++;
+        }
+        while (level > 0 && radiusPixels > limit(sphere, level) * (1 + hysteresis)) {
+            level--;
+        }
+        return level;
+    }
+
+    /**
+     * Największy promień ekranowy, przy którym poziom spełnia limit długości krawędzi.
+     */
+    private float limit(Sphere sphere, int level) {
+        return (float) (sphere.getLodLongitudeBands(level) * edgePixels / TWO_PI);
+    }
+
+    public float getEdgePixels() {
+        return edgePixels;
+    }
+
+    public void setEdgePixels(float edgePixels) {
+        if (edgePixels <= 0) {
+            throw new IllegalArgumentException("Edge length must be positive");
+        }
+        this.edgePixels = edgePixels;
+    }
+
+    public float getHysteresis() {
+        return hysteresis;
+    }
+
+    public void setHysteresis(float hysteresis) {
+        if (hysteresis < 0 || hysteresis >= 1) {
+            throw new IllegalArgumentException("Hysteresis must be in [0, 1)");
+        }
+        this.hysteresis = hysteresis;
+    }
+}
@@ -4,23 +4,45 @@ import javax.swing.*;
 import java.awt.*;
 import java.awt.event.KeyAdapter;
 import java.awt.event.KeyEvent;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 
 import org.ejml.simple.SimpleMatrix;
+import src.bsp.BSPStats;
+import src.bsp.SplitterHeuristic;
 import src.lighting.Light;
 import src.lighting.MaterialPreset;
 
 public class Main extends JPanel {
     private static final int WIDTH = 800;
     private static final int HEIGHT = 600;
+    private static final String METRICS_FILE = "frame-metrics.csv";
+    // Liczba instancji dodawanych jednym naciśnięciem klawisza N
+    private static final int SPAWN_BATCH = 100;
+    // Docelowa liczba klatek na sekundę, np. -Dcamera.fps=30
+    private static final int TARGET_FPS = Integer.getInteger("camera.fps", 60);
 
     private final Camera camera;
+    private final CameraInput cameraInput = new CameraInput();
+    private final RenderLoop renderLoop;
     private final Renderer renderer;
     private final List<Face> allFaces;
+    private Sphere sphere;
+    // Małe sfery współdzielące jedną siatkę; każda ma własne położenie i materiał
+    private final List<Instance> instances = new ArrayList<>();
+    private final Mesh instanceMesh = SphereTessellation.get(1.0f, 12, 12);
+    private final Random spawnRandom = new Random(42);
     private boolean bspEnabled = true;
+    private boolean zBufferEnabled = false;
+    private int splitterIndex = 2;
+    private boolean cullingEnabled = true;
     private boolean wireframeMode = false;
     private boolean lightingEnabled = true;
+    private Writer metricsWriter;
     private List<MaterialPreset> materialPresets;
     private int currentMaterialIndex = 0;   private Light movableLight;
     
@@ -29,26 +51,28 @@ public class Main extends JPanel {
 
         camera = new Camera(2.0f, WIDTH, HEIGHT);
 
-        camera.setCameraPosition(new org.ejml.simple.SimpleMatrix(3, 1, true,
-                new float[]{0.0f, 0.0f, -5.0f}));
-        camera.recalculateViewMatrix();
+        camera.setPosition(0.0f, 0.0f, -5.0f);
 
         renderer = new Renderer(camera, null);
+        renderer.setSplitterHeuristic(SplitterHeuristic.PRESETS[splitterIndex]);
 
         movableLight = new Light(0.0f, 0.0f, 2.0f, Color.WHITE, 1.0f, 0.2f);
         renderer.addLight(movableLight);
 
-        updateMaterial();
-
         allFaces = new ArrayList<>();
 
         createSphere();
 
+        // Klatki powstają w osobnym wątku; EDT tylko kopiuje gotowy obraz na ekran
+        renderLoop = new RenderLoop(WIDTH, HEIGHT, TARGET_FPS, this::renderFrame, this::repaint);
+
         setFocusable(true);
         addKeyListener(new KeyAdapter() {
             @Override
             public void keyPressed(KeyEvent e) {
-                handleKeyPress(e);
+                int keyCode = e.getKeyCode();
+                boolean shiftDown = e.isShiftDown();
+                renderLoop.post(() -> handleKeyPress(keyCode, shiftDown));
             }
         });
     }
@@ -102,20 +126,24 @@ public class Main extends JPanel {
 
         MaterialPreset currentPreset = materialPresets.get(currentMaterialIndex);
 
-        Sphere sphere = new Sphere(0f, 0f, 4.0f, 2.0f, 20, 20, currentPreset.getBaseColor());
+        sphere = new Sphere(0f, 0f, 4.0f, 2.0f, 20, 20,
+                new Surface(currentPreset.getBaseColor(), currentPreset.getMaterial()));
         allFaces.addAll(sphere.getFaces());
+        renderer.setSceneFaces(allFaces);
     }
 
+    /**
+     * Zmienia tylko wygląd sfery: siatka, ściany i drzewo BSP pozostają bez zmian.
+     */
     private void updateMaterial() {
         MaterialPreset currentPreset = materialPresets.get(currentMaterialIndex);
-        renderer.setDefaultMaterial(currentPreset.getMaterial());
+        sphere.setAppearance(currentPreset.getBaseColor(), currentPreset.getMaterial());
     }
 
-    private void handleKeyPress(KeyEvent e) {
-        int keyCode = e.getKeyCode();
-
-        boolean lightControl = e.isShiftDown();
-
+    /**
+     * Obsługa klawiszy w wątku renderującym, który jako jedyny zmienia stan sceny.
+     */
+    private void handleKeyPress(int keyCode, boolean lightControl) {
         if (lightControl) {
             handleLightControls(keyCode);
         } else {
@@ -127,7 +155,6 @@ public class Main extends JPanel {
             if (materialIndex >= 0 && materialIndex < materialPresets.size()) {
                 currentMaterialIndex = materialIndex;
                 updateMaterial();
-                createSphere();
             }
         }
 
@@ -140,12 +167,64 @@ public class Main extends JPanel {
                 bspEnabled = !bspEnabled;
                 renderer.setBSPEnabled(bspEnabled);
                 break;
+            case KeyEvent.VK_H:  // Zmiana heurystyki wyboru płaszczyzny podziału BSP
+                splitterIndex = (splitterIndex + 1) % SplitterHeuristic.PRESETS.length;
+                renderer.setSplitterHeuristic(SplitterHeuristic.PRESETS[splitterIndex]);
+                break;
+            case KeyEvent.VK_C:  // Włączanie/wyłączanie odrzucania ścian niewidocznych
+                cullingEnabled = !cullingEnabled;
+                break;
+            case KeyEvent.VK_Z:  // Włączanie/wyłączanie bufora głębokości
+                zBufferEnabled = !zBufferEnabled;
+                break;
             case KeyEvent.VK_W:  // Włączanie/wyłączanie trybu wireframe
                 wireframeMode = !wireframeMode;
                 break;
+            case KeyEvent.VK_D:  // Włączanie/wyłączanie poziomów szczegółowości
+                renderer.setLodEnabled(!renderer.isLodEnabled());
+                break;
+            case KeyEvent.VK_N:  // Dodanie instancji
+                spawnInstances();
+                break;
+            case KeyEvent.VK_M:  // Włączanie/wyłączanie zapisu pomiarów klatek do CSV
+                toggleMetricsRecording();
+                break;
         }
+    }
 
-        repaint();
+    /**
+     * Dodaje {@link #SPAWN_BATCH} sfer w losowych miejscach wokół głównej sfery. Nowe obiekty
+     * tylko wskazują wspólną siatkę, więc dodanie ich nie wymaga żadnej pracy na geometrii.
+     */
+    private void spawnInstances() {
+        for (int i = 0; i < SPAWN_BATCH; i++) {
+            MaterialPreset preset = materialPresets.get(spawnRandom.nextInt(materialPresets.size()));
+            float x = (spawnRandom.nextFloat() - 0.5f) * 12.0f;
+            float y = (spawnRandom.nextFloat() - 0.5f) * 8.0f;
+            float z = 4.0f + (spawnRandom.nextFloat() - 0.5f) * 12.0f;
+            float radius = 0.1f + spawnRandom.nextFloat() * 0.3f;
+
+            instances.add(new Instance(instanceMesh, new Surface(preset.getBaseColor(), preset.getMaterial()),
+                    x, y, z, radius));
+        }
+        renderer.setSceneObjects(instances);
+    }
+
+    private void toggleMetricsRecording() {
+        FrameMetrics metrics = renderer.getMetrics();
+        try {
+            if (metricsWriter == null) {
+                metricsWriter = new FileWriter(METRICS_FILE);
+                metrics.startCsv(metricsWriter);
+            } else {
+                metrics.stopCsv();
+                metricsWriter.close();
+                metricsWriter = null;
+            }
+        } catch (IOException e) {
+            System.err.println("Cannot write " + METRICS_FILE + ": " + e.getMessage());
+            metricsWriter = null;
+        }
     }
     
     private void handleLightControls(int keyCode) {
@@ -179,54 +258,58 @@ public class Main extends JPanel {
         movableLight.setPosition(new org.ejml.simple.SimpleMatrix(3, 1, true, new float[]{x, y, z}));
     }
 
+    /**
+     * Sterowanie kamerą trafia do akumulatora {@link CameraInput}; zmiany są stosowane
+     * razem na początku najbliższej klatki.
+     */
     private void handleCameraControls(int keyCode) {
         switch (keyCode) {
             // Translacja kamery
             case KeyEvent.VK_QUOTE:  // Przód (');
-                camera.moveCameraForward(1);
+                cameraInput.move(0, 0, 1);
                 break;
             case KeyEvent.VK_PERIOD:  // Tył (.)
-                camera.moveCameraForward(-1);
+                cameraInput.move(0, 0, -1);
                 break;
             case KeyEvent.VK_A:  // Lewo (a)
-                camera.moveCameraRight(-1);
+                cameraInput.move(-1, 0, 0);
                 break;
             case KeyEvent.VK_E:  // Prawo (e)
-                camera.moveCameraRight(1);
+                cameraInput.move(1, 0, 0);
                 break;
             case KeyEvent.VK_O:  // Dół (o)
-                camera.moveCameraUp(-1);
+                cameraInput.move(0, -1, 0);
                 break;
             case KeyEvent.VK_COMMA:  // Góra (,)
-                camera.moveCameraUp(1);
+                cameraInput.move(0, 1, 0);
                 break;
 
             // Rotacja kamery
             case KeyEvent.VK_UP:  // Obrót w górę
-                camera.rotateCamera(-5, 0, 0);
+                cameraInput.rotate(-5, 0, 0);
                 break;
             case KeyEvent.VK_DOWN:  // Obrót w dół
-                camera.rotateCamera(5, 0, 0);
+                cameraInput.rotate(5, 0, 0);
                 break;
             case KeyEvent.VK_LEFT:  // Obrót w lewo
-                camera.rotateCamera(0, -5, 0);
+                cameraInput.rotate(0, -5, 0);
                 break;
             case KeyEvent.VK_RIGHT:  // Obrót w prawo
-                camera.rotateCamera(0, 5, 0);
+                cameraInput.rotate(0, 5, 0);
                 break;
             case KeyEvent.VK_SEMICOLON:  // Obrót przeciwnie do wskazówek zegara (;)
-                camera.rotateCamera(0, 0, 5);
+                cameraInput.rotate(0, 0, 5);
                 break;
             case KeyEvent.VK_Q:  // Obrót zgodnie ze wskazówkami zegara (q)
-                camera.rotateCamera(0, 0, -5);
+                cameraInput.rotate(0, 0, -5);
                 break;
 
             // Zmiana FOV (zoom)
             case KeyEvent.VK_CLOSE_BRACKET:  // Zoom in ]
-                camera.changeZoom(1);
+                cameraInput.zoom(1);
                 break;
             case KeyEvent.VK_OPEN_BRACKET:  // Zoom out [
-                camera.changeZoom(-1);
+                cameraInput.zoom(-1);
                 break;
         }
     }
@@ -234,31 +317,41 @@ public class Main extends JPanel {
     @Override
     protected void paintComponent(Graphics g) {
         super.paintComponent(g);
+        g.drawImage(renderLoop.acquireFrame(), 0, 0, null);
+    }
 
+    /**
+     * Rysuje pełną klatkę; wywoływane przez {@link RenderLoop} w wątku renderującym.
+     */
+    private void renderFrame(Graphics2D g) {
         // Czyszczenie ekranu
         g.setColor(Color.BLACK);
-        g.fillRect(0, 0, getWidth(), getHeight());
+        g.fillRect(0, 0, WIDTH, HEIGHT);
 
         g.setColor(Color.WHITE);
 
+        // Wszystkie zdarzenia od poprzedniej klatki jako jedna zmiana kamery
+        cameraInput.apply(camera);
+
         renderer.setGraphics(g);
 
-        renderer.setBSPEnabled(bspEnabled);
+        renderer.setVisibilityMode(currentVisibilityMode());
         renderer.setLightingEnabled(lightingEnabled);
+        renderer.setCullingEnabled(cullingEnabled);
+        renderer.beginFrame();
 
-        SimpleMatrix cameraPos = camera.getCameraPosition();
         SimpleMatrix lightPos = movableLight.getPosition();
 
         float distanceToLight = (float) Math.sqrt(
-                Math.pow(lightPos.get(0) - cameraPos.get(0), 2) +
-                        Math.pow(lightPos.get(1) - cameraPos.get(1), 2) +
-                        Math.pow(lightPos.get(2) - cameraPos.get(2), 2)
+                Math.pow(lightPos.get(0) - camera.getPositionX(), 2) +
+                        Math.pow(lightPos.get(1) - camera.getPositionY(), 2) +
+                        Math.pow(lightPos.get(2) - camera.getPositionZ(), 2)
         );
 
         float distanceToSphere = (float) Math.sqrt(
-                Math.pow(0.0f - cameraPos.get(0), 2) +
-                        Math.pow(0.0f - cameraPos.get(1), 2) +
-                        Math.pow(4.0f - cameraPos.get(2), 2)
+                Math.pow(0.0f - camera.getPositionX(), 2) +
+                        Math.pow(0.0f - camera.getPositionY(), 2) +
+                        Math.pow(4.0f - camera.getPositionZ(), 2)
         );
 
         if (distanceToLight > distanceToSphere) {
@@ -273,34 +366,55 @@ public class Main extends JPanel {
                 }
             }
         } else {
-            if (bspEnabled) {
-                for (Face face : allFaces) {
-                    renderer.addFace(face);
-                }
+            // W trybie BSP instancje są rysowane w trakcie przejścia drzewa sfery
+            if (renderer.getVisibilityMode() == VisibilityMode.BSP) {
                 renderer.renderWithBSP();
             } else {
-                for (Face face : allFaces) {
-                    renderer.drawShape(face);
-                }
+                renderer.drawSphere(sphere);
+                renderer.renderObjects();
             }
         }
 
+        renderer.endFrame();
+
         if (distanceToLight <= distanceToSphere) {
             renderer.drawLightSource(movableLight);
         }
 
         // Wyświetl informacje o stanie
         g.setColor(Color.WHITE);
-        g.drawString("BSP: " + (bspEnabled ? "ON" : "OFF") + " (B)", 10, 20);
+        g.drawString("BSP: " + (bspEnabled ? "ON" : "OFF") + " (B)"
+                + "   Z-buffer: " + (zBufferEnabled ? "ON" : "OFF") + " (Z)", 10, 20);
         g.drawString("Lighting: " + (lightingEnabled ? "ON" : "OFF") + " (L)", 10, 40);
-        g.drawString("Wireframe: " + (wireframeMode ? "ON" : "OFF") + " (W)", 10, 60);
+        g.drawString("Wireframe: " + (wireframeMode ? "ON" : "OFF") + " (W)"
+                + "   Culling: " + (cullingEnabled ? "ON" : "OFF") + " (C)", 10, 60);
         g.drawString("Light position: " + formatVector(movableLight.getPosition()) + " (Shift+AOEQ',)", 10, 80);
 
         // Informacje o materiale
         MaterialPreset currentPreset = materialPresets.get(currentMaterialIndex);
-        g.drawString("Material: " + currentPreset.getName() + " (1-4)", 10, 100);
+        int lodLevel = sphere.getLodLevel();
+        g.drawString("Material: " + currentPreset.getName() + " (1-4)"
+                + "   LOD: " + (renderer.isLodEnabled() ? "ON" : "OFF") + " (D) level " + lodLevel
+                + " (" + sphere.getLodLatitudeBands(lodLevel) + "x" + sphere.getLodLongitudeBands(lodLevel) + ")",
+                10, 100);
+
+        BSPStats bspStats = renderer.getBspStats();
+        g.drawString("BSP splitter: " + SplitterHeuristic.PRESETS[splitterIndex] + " (H)"
+                + (bspStats != null ? "   " + bspStats : ""), 10, 120);
+
+        FrameMetrics metrics = renderer.getMetrics();
+        g.drawString(metrics.summary(), 10, 140);
+        g.drawString(metrics.countSummary() + "   CSV: " + (metricsWriter != null ? METRICS_FILE : "OFF") + " (M)"
+                + "   Instances: " + instances.size() + " (N)", 10, 160);
     }
     
+    private VisibilityMode currentVisibilityMode() {
+        if (zBufferEnabled) {
+            return VisibilityMode.Z_BUFFER;
+        }
+        return bspEnabled ? VisibilityMode.BSP : VisibilityMode.SUBMISSION_ORDER;
+    }
+
     private String formatVector(org.ejml.simple.SimpleMatrix v) {
         return String.format("(%.1f, %.1f, %.1f)", v.get(0), v.get(1), v.get(2));
     }
@@ -317,6 +431,7 @@ public class Main extends JPanel {
 
             frame.setVisible(true);
             cameraDemo.requestFocusInWindow();
+            cameraDemo.renderLoop.start();
         });
     }
 }
\ No newline at end of file
@@ -0,0 +1,210 @@
+package src;
+
+import lombok.Getter;
+import org.ejml.simple.SimpleMatrix;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Siatka indeksowana: jedna tablica pozycji (x, y, z dla każdego wierzchołka)
+ * oraz bufor indeksów (3 indeksy na trójkąt). Wierzchołki współdzielone przez
+ * sąsiednie trójkąty są przechowywane tylko raz.
+ */
+@Getter
+public class Mesh {
+    private final float[] positions;
+    private final int[] indices;
+    // Atrybuty trójkątów liczone raz przy budowie: normalne zewnętrzne i środki (x, y, z na trójkąt)
+    private final float[] normals;
+    private final float[] centroids;
+    // Kula otaczająca wszystkie wierzchołki: środek prostopadłościanu otaczającego i promień (x, y, z, r)
+    private final float[] boundingSphere;
+
+    public Mesh(float[] positions, int[] indices) {
+        if (positions.length % 3 != 0) {
+            throw new IllegalArgumentException("Positions must contain 3 coordinates per vertex");
+        }
+        if (indices.length % 3 != 0) {
+            throw new IllegalArgumentException("Indices must contain 3 entries per triangle");
+        }
+
+        int vertexCount = positions.length / 3;
+        for (int index : indices) {
+            if (index < 0 || index >= vertexCount) {
+                throw new IllegalArgumentException("Vertex index out of range: " + index);
+            }
+        }
+
+        this.positions = positions;
+        this.indices = indices;
+        this.normals = new float[indices.length];
+        this.centroids = new float[indices.length];
+        computeTriangleAttributes();
+        this.boundingSphere = computeBoundingSphere(positions);
+    }
+
+    private Mesh(float[] positions, int[] indices, float[] normals, float[] centroids, float[] boundingSphere) {
+        this.positions = positions;
+        this.indices = indices;
+        this.normals = normals;
+        this.centroids = centroids;
+        this.boundingSphere = boundingSphere;
+    }
+
+    /**
+     * Kopia siatki przesunięta o (dx, dy, dz). Indeksy i normalne są współdzielone z oryginałem,
+     * a pozycje i środki trójkątów przesuwane jednym przebiegiem, bez ponownego liczenia normalnych.
+     */
+    public Mesh translated(float dx, float dy, float dz) {
+        if (dx == 0 && dy == 0 && dz == 0) {
+            return this;
+        }
+        float[] sphere = {dx + boundingSphere[0], dy + boundingSphere[1], dz + boundingSphere[2], boundingSphere[3]};
+        return new Mesh(offset(positions, dx, dy, dz), indices, normals, offset(centroids, dx, dy, dz), sphere);
+    }
+
+    private static float[] computeBoundingSphere(float[] positions) {
+        if (positions.length == 0) {
+            return new float[4];
+        }
+
+        float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY, minZ = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY, maxZ = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < positions.length; i += 3) {
+            minX = Math.min(minX, positions[i]);
+            minY = Math.min(minY, positions[i + 1]);
+            minZ = Math.min(minZ, positions[i + 2]);
+            maxX = Math.max(maxX, positions[i]);
+            maxY = Math.max(maxY, positions[i + 1]);
+            maxZ = Math.max(maxZ, positions[i + 2]);
+        }
+
+        float cx = (minX + maxX) / 2, cy = (minY + maxY) / 2, cz = (minZ + maxZ) / 2;
+        float radiusSquared = 0;
+        for (int i = 0; i < positions.length; i += 3) {
+            float dx = positions[i] - cx;
+            float dy = positions[i + 1] - cy;
+            float dz = positions[i + 2] - cz;
+            radiusSquared = Math.max(radiusSquared, dx * dx + dy * dy + dz * dz);
+        }
+        return new float[]{cx, cy, cz, (float) Math.sqrt(radiusSquared)};
+    }
+
+    private static float[] offset(float[] coordinates, float dx, float dy, float dz) {
+        float[] result = new float[coordinates.length];
+        for (int i = 0; i < coordinates.length; i += 3) {
+            result[i] = dx + coordinates[i];
+            result[i + 1] = dy + coordinates[i + 1];
+            result[i + 2] = dz + coordinates[i + 2];
+        }
+        return result;
+    }
+
+    /**
+     * Trójkąty są zorientowane przeciwnie do ruchu wskazówek zegara patrząc z zewnątrz,
+     * więc normalna (v2 - v1) x (v3 - v1) wskazuje na zewnątrz obiektu.
+     */
+    private void computeTriangleAttributes() {
+        int triangleCount = getTriangleCount();
+        for (int t = 0; t < triangleCount; t++) {
+            int p1 = indices[t * 3] * 3;
+            int p2 = indices[t * 3 + 1] * 3;
+            int p3 = indices[t * 3 + 2] * 3;
+
+            float ux = positions[p2] - positions[p1];
+            float uy = positions[p2 + 1] - positions[p1 + 1];
+            float uz = positions[p2 + 2] - positions[p1 + 2];
+            float vx = positions[p3] - positions[p1];
+            float vy = positions[p3 + 1] - positions[p1 + 1];
+            float vz = positions[p3 + 2] - positions[p1 + 2];
+
+            normalizedCross(ux, uy, uz, vx, vy, vz, normals, t * 3);
+
+            centroids[t * 3] = (positions[p1] + positions[p2] + positions[p3]) / 3.0f;
+            centroids[t * 3 + 1] = (positions[p1 + 1] + positions[p2 + 1] + positions[p3 + 1]) / 3.0f;
+            centroids[t * 3 + 2] = (positions[p1 + 2] + positions[p2 + 2] + positions[p3 + 2]) / 3.0f;
+        }
+    }
+
+    /**
+     * Zapisuje znormalizowany iloczyn wektorowy u x v pod {@code out[offset..offset+2]}.
+     * Dla wektorów równoległych zapisuje wektor zerowy.
+     */
+    static void normalizedCross(float ux, float uy, float uz, float vx, float vy, float vz,
+                                float[] out, int offset) {
+        float nx = uy * vz - uz * vy;
+        float ny = uz * vx - ux * vz;
+        float nz = ux * vy - uy * vx;
+        float length = (float) Math.sqrt(nx * nx + ny * ny + nz * nz);
+
+        if (length > 1e-12f) {
+            nx /= length;
+            ny /= length;
+            nz /= length;
+        } else {
+            nx = ny = nz = 0;
+        }
+
+        out[offset] = nx;
+        out[offset + 1] = ny;
+        out[offset + 2] = nz;
+    }
+
+    public int getVertexCount() {
+        return positions.length / 3;
+    }
+
+    public int getTriangleCount() {
+        return indices.length / 3;
+    }
+
+    public int getIndex(int triangle, int corner) {
+        return indices[triangle * 3 + corner];
+    }
+
+    public float getX(int vertex) {
+        return positions[vertex * 3];
+    }
+
+    public float getY(int vertex) {
+        return positions[vertex * 3 + 1];
+    }
+
+    public float getZ(int vertex) {
+        return positions[vertex * 3 + 2];
+    }
+
+    /**
+     * Tworzy obiekty {@link Face} dla ścieżek, które wciąż ich wymagają (BSP, wireframe).
+     * Każdy wierzchołek siatki jest zamieniany na jedną macierz współdzieloną przez wszystkie ściany.
+     */
+    public List<Face> toFaces(Color color) {
+        return toFaces(new Surface(color));
+    }
+
+    /**
+     * Jak wyżej, ale wszystkie ściany współdzielą podany {@link Surface}, więc zmiana koloru
+     * lub materiału obiektu nie wymaga tworzenia ścian od nowa.
+     */
+    public List<Face> toFaces(Surface surface) {
+        int vertexCount = getVertexCount();
+        SimpleMatrix[] vertices = new SimpleMatrix[vertexCount];
+        for (int i = 0; i < vertexCount; i++) {
+            vertices[i] = new SimpleMatrix(3, 1, true, new float[]{getX(i), getY(i), getZ(i)});
+        }
+
+        int triangleCount = getTriangleCount();
+        List<Face> faces = new ArrayList<>(triangleCount);
+        for (int t = 0; t < triangleCount; t++) {
+            SimpleMatrix v1 = vertices[getIndex(t, 0)];
+            SimpleMatrix v2 = vertices[getIndex(t, 1)];
+            SimpleMatrix v3 = vertices[getIndex(t, 2)];
+
+            // Trójkąt zapisany jako czworokąt z powtórzonym pierwszym wierzchołkiem
+            faces.add(new Face(new SimpleMatrix[]{v1, v2, v3, v1}, surface, this, t));
+        }
+        return faces;
+    }
+}
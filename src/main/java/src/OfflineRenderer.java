@@ -0,0 +1,348 @@
+package src;
+
+import src.lighting.Light;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Renderowanie bez okna: scena i ruch kamery są opisane skryptem, a każda klatka trafia
+ * do obrazu {@link BufferedImage} i do pliku PNG lub surowego (ARGB, 4 bajty na piksel, big-endian).
+ *
+ * <p>Skrypt ma po jednym poleceniu w wierszu, {@code #} zaczyna komentarz:
+ * <pre>
+ * sphere x y z radius bands r g b    dodaje sferę (przed pierwszą klatką)
+ * instance x y z radius bands r g b  dodaje instancję sfery jednostkowej o danej teselacji (w dowolnej chwili)
+ * light x y z [intensity]            dodaje światło
+ * light-position index x y z         przesuwa światło o podanym numerze (od 0)
+ * instance-position index x y z      przesuwa instancję o podanym numerze (od 0)
+ * camera x y z targetX targetY targetZ
+ * frame [count]                      renderuje klatkę (lub count jednakowych klatek)
+ * </pre>
+ * Bez poleceń {@code sphere}, {@code instance} i {@code light} używana jest scena z {@link Main}.
+ *
+ * <p>Użycie: {@code OfflineRenderer script [--width W] [--height H] [--mode SUBMISSION_ORDER|BSP|Z_BUFFER]
+ * [--format png|raw|none] [--output katalog] [--metrics plik.csv] [--bsp-cache katalog]}
+ * Z {@code --bsp-cache} zbudowane drzewo BSP jest zapisywane i przy kolejnym uruchomieniu z tą samą
+ * sceną wczytywane zamiast budowane.
+ */
+public class OfflineRenderer {
+    private final int width;
+    private final int height;
+    private final VisibilityMode mode;
+    private final String format;
+    private final Path outputDirectory;
+
+    private final Camera camera;
+    private final Renderer renderer;
+    private final BufferedImage image;
+    private final Graphics2D graphics;
+    private final List<Sphere> spheres = new ArrayList<>();
+    private final List<Instance> instances = new ArrayList<>();
+    private boolean sceneReady;
+
+    private int frameCount;
+    private long renderNanos;
+
+    public OfflineRenderer(int width, int height, VisibilityMode mode, String format, Path outputDirectory) {
+        this.width = width;
+        this.height = height;
+        this.mode = mode;
+        this.format = format;
+        this.outputDirectory = outputDirectory;
+
+        this.camera = new Camera(2.0f, width, height);
+        camera.lookAt(0.0f, 0.0f, -5.0f, 0.0f, 0.0f, 0.0f);
+
+        this.image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        this.graphics = image.createGraphics();
+        this.renderer = new Renderer(camera, graphics);
+    }
+
+    public static void main(String[] args) throws IOException {
+        System.setProperty("java.awt.headless", "true");
+
+        if (args.length == 0) {
+            System.err.println("Usage: OfflineRenderer script [--width W] [--height H] "
+                    + "[--mode SUBMISSION_ORDER|BSP|Z_BUFFER] [--format png|raw|none] [--output directory] "
+                    + "[--metrics file.csv] [--bsp-cache directory]");
+            System.exit(1);
+        }
+
+        int width = 800;
+        int height = 600;
+        VisibilityMode mode = VisibilityMode.BSP;
+        String format = "png";
+        Path output = Paths.get("frames");
+        Path metricsFile = null;
+        Path bspCache = null;
+
+        for (int i = 1; i < args.length; i += 2) {
+            if (i + 1 >= args.length) {
+                throw new IllegalArgumentException("Missing value for option " + args[i]);
+            }
+            String value = args[i + 1];
+            switch (args[i]) {
+                case "--width":
+                    width = Integer.parseInt(value);
+                    break;
+                case "--height":
+                    height = Integer.parseInt(value);
+                    break;
+                case "--mode":
+                    mode = VisibilityMode.valueOf(value.toUpperCase(Locale.ROOT));
+                    break;
+                case "--format":
+                    format = value.toLowerCase(Locale.ROOT);
+                    if (!format.equals("png") && !format.equals("raw") && !format.equals("none")) {
+                        throw new IllegalArgumentException("Unknown output format: " + value);
+                    }
+                    break;
+                case "--output":
+                    output = Paths.get(value);
+                    break;
+                case "--metrics":
+                    metricsFile = Paths.get(value);
+                    break;
+                case "--bsp-cache":
+                    bspCache = Paths.get(value);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option: " + args[i]);
+            }
+        }
+
+        OfflineRenderer offlineRenderer = new OfflineRenderer(width, height, mode, format, output);
+        offlineRenderer.renderer.setBspCacheDirectory(bspCache);
+        FrameMetrics metrics = offlineRenderer.renderer.getMetrics();
+        Writer metricsWriter = metricsFile != null ? Files.newBufferedWriter(metricsFile, StandardCharsets.UTF_8) : null;
+        if (metricsWriter != null) {
+            metrics.startCsv(metricsWriter);
+        }
+
+        long start = System.nanoTime();
+        try (Reader reader = Files.newBufferedReader(Paths.get(args[0]), StandardCharsets.UTF_8)) {
+            offlineRenderer.run(reader);
+        } finally {
+            if (metricsWriter != null) {
+                metrics.stopCsv();
+                metricsWriter.close();
+            }
+        }
+        long totalNanos = System.nanoTime() - start;
+
+        System.out.println(offlineRenderer.summary(totalNanos));
+        System.out.println(metrics.summary());
+    }
+
+    /**
+     * Wykonuje skrypt wiersz po wierszu.
+     */
+    public void run(Reader script) throws IOException {
+        if (!format.equals("none")) {
+            Files.createDirectories(outputDirectory);
+        }
+
+        BufferedReader reader = new BufferedReader(script);
+        String line;
+        int lineNumber = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNumber++;
+            int comment = line.indexOf('#');
+            if (comment >= 0) {
+                line = line.substring(0, comment);
+            }
+            line = line.trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+
+            try {
+                execute(line.split("\\s+"));
+            } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+                throw new IllegalArgumentException("Script line " + lineNumber + ": " + e.getMessage(), e);
+            }
+        }
+
+        graphics.dispose();
+    }
+
+    private void execute(String[] command) throws IOException {
+        switch (command[0]) {
+            case "sphere":
+                expectArguments(command, 8);
+                if (sceneReady) {
+                    throw new IllegalArgumentException("Spheres must be added before the first frame");
+                }
+                spheres.add(new Sphere(number(command[1]), number(command[2]), number(command[3]),
+                        number(command[4]), integer(command[5]), integer(command[5]),
+                        new Color(integer(command[6]), integer(command[7]), integer(command[8]))));
+                break;
+            case "instance":
+                expectArguments(command, 8);
+                int bands = integer(command[5]);
+                instances.add(new Instance(SphereTessellation.get(1.0f, bands, bands),
+                        new Surface(new Color(integer(command[6]), integer(command[7]), integer(command[8]))),
+                        number(command[1]), number(command[2]), number(command[3]), number(command[4])));
+                if (sceneReady) {
+                    updateSceneObjects();
+                }
+                break;
+            case "light":
+                if (command.length != 4 && command.length != 5) {
+                    throw new IllegalArgumentException("light expects 3 or 4 arguments");
+                }
+                float intensity = command.length == 5 ? number(command[4]) : 1.0f;
+                renderer.addLight(new Light(number(command[1]), number(command[2]), number(command[3]),
+                        Color.WHITE, intensity, 0.2f));
+                break;
+            case "light-position":
+                expectArguments(command, 4);
+                Light light = renderer.getLights().get(integer(command[1]));
+                light.getPosition().set(0, number(command[2]));
+                light.getPosition().set(1, number(command[3]));
+                light.getPosition().set(2, number(command[4]));
+                break;
+            case "instance-position":
+                expectArguments(command, 4);
+                Instance instance = instances.get(integer(command[1]));
+                instance.translate(number(command[2]) - instance.getX(), number(command[3]) - instance.getY(),
+                        number(command[4]) - instance.getZ());
+                break;
+            case "camera":
+                expectArguments(command, 6);
+                camera.lookAt(number(command[1]), number(command[2]), number(command[3]),
+                        number(command[4]), number(command[5]), number(command[6]));
+                break;
+            case "frame":
+                int count = command.length > 1 ? integer(command[1]) : 1;
+                for (int i = 0; i < count; i++) {
+                    renderFrame();
+                    writeFrame();
+                }
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown command: " + command[0]);
+        }
+    }
+
+    private void prepareScene() {
+        if (spheres.isEmpty() && instances.isEmpty()) {
+            spheres.add(new Sphere(0f, 0f, 4.0f, 2.0f, 20, 20, new Color(104, 104, 104)));
+        }
+        if (renderer.getLights().isEmpty()) {
+            renderer.addLight(new Light(0.0f, 0.0f, 2.0f, Color.WHITE, 1.0f, 0.2f));
+        }
+
+        List<Face> faces = new ArrayList<>();
+        for (Sphere sphere : spheres) {
+            faces.addAll(sphere.getFaces());
+        }
+        renderer.setSceneFaces(faces);
+        sceneReady = true;
+        updateSceneObjects();
+    }
+
+    /**
+     * Sfery trafiają do hierarchii obiektów tylko poza trybem BSP, w którym rysuje je drzewo.
+     */
+    private void updateSceneObjects() {
+        List<SceneObject> objects = new ArrayList<>(instances);
+        if (mode != VisibilityMode.BSP) {
+            objects.addAll(spheres);
+        }
+        renderer.setSceneObjects(objects);
+    }
+
+    /**
+     * Renderuje jedną klatkę do {@link #getImage()}, tak jak {@link Main#paintComponent}.
+     */
+    public void renderFrame() {
+        if (!sceneReady) {
+            prepareScene();
+        }
+
+        long start = System.nanoTime();
+
+        graphics.setColor(Color.BLACK);
+        graphics.fillRect(0, 0, width, height);
+
+        renderer.setVisibilityMode(mode);
+        renderer.beginFrame();
+        if (mode == VisibilityMode.BSP) {
+            renderer.renderWithBSP();
+        } else {
+            renderer.renderObjects();
+        }
+        renderer.endFrame();
+
+        renderNanos += System.nanoTime() - start;
+        frameCount++;
+    }
+
+    private void writeFrame() throws IOException {
+        String name = String.format(Locale.ROOT, "frame_%05d", frameCount - 1);
+
+        if (format.equals("png")) {
+            ImageIO.write(image, "png", outputDirectory.resolve(name + ".png").toFile());
+        } else if (format.equals("raw")) {
+            int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+            ByteBuffer buffer = ByteBuffer.allocate(pixels.length * 4);
+            buffer.asIntBuffer().put(pixels);
+
+            File file = outputDirectory.resolve(name + ".raw").toFile();
+            try (FileChannel channel = FileChannel.open(file.toPath(),
+                    StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        }
+    }
+
+    public String summary(long totalNanos) {
+        double renderMillis = renderNanos / 1e6;
+        double totalMillis = totalNanos / 1e6;
+        return String.format(Locale.ROOT,
+                "Rendered %d frames %dx%d (%s): %.1f ms render, %.1f fps render, %.1f fps with output",
+                frameCount, width, height, mode, renderMillis,
+                frameCount / Math.max(renderMillis / 1000.0, 1e-9),
+                frameCount / Math.max(totalMillis / 1000.0, 1e-9));
+    }
+
+    public BufferedImage getImage() {
+        return image;
+    }
+
+    private static void expectArguments(String[] command, int count) {
+        if (command.length != count + 1) {
+            throw new IllegalArgumentException(command[0] + " expects " + count + " arguments");
+        }
+    }
+
+    private static float number(String value) {
+        return Float.parseFloat(value);
+    }
+
+    private static int integer(String value) {
+        return Integer.parseInt(value);
+    }
+}
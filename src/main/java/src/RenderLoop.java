@@ -0,0 +1,158 @@
+package src;
+
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+/**
+ * Pętla renderowania na osobnym wątku z potrójnym buforowaniem. Wątek renderujący rysuje
+ * do obrazu roboczego, po czym atomowo zamienia go z obrazem gotowym; wątek wyświetlający
+ * zabiera najnowszy gotowy obraz w ten sam sposób. Żaden wątek nie czeka na drugi, a obraz
+ * wyświetlany nigdy nie jest w trakcie rysowania.
+ *
+ * <p>Zmiany stanu sceny zgłaszane z innych wątków ({@link #post(Runnable)}) są wykonywane
+ * przez wątek renderujący na początku najbliższej klatki.
+ *
+ * <p>Wyjątek z akcji lub z rysowania klatki nie zatrzymuje pętli: jest zgłaszany na {@code System.err}
+ * (powtarzający się co klatkę tylko raz), a klatka, której nie udało się narysować, nie jest oddawana.
+ */
+public class RenderLoop {
+    // Bit w ready oznaczający obraz, którego wątek wyświetlający jeszcze nie zabrał
+    private static final int FRESH = 4;
+    private static final int INDEX_MASK = 3;
+
+    private final BufferedImage[] images = new BufferedImage[3];
+    private final AtomicInteger ready = new AtomicInteger(1);
+    private int back = 0;
+    private int front = 2;
+
+    private final Consumer<Graphics2D> frameRenderer;
+    private final Runnable frameReady;
+    private final Queue<Runnable> actions = new ConcurrentLinkedQueue<>();
+    private volatile long framePeriodNanos;
+    private volatile boolean running;
+    private Thread thread;
+    // Czy poprzednia klatka zakończyła się wyjątkiem (kolejne zgłaszane dopiero po udanej klatce)
+    private boolean frameFailed;
+
+    /**
+     * @param frameRenderer rysuje pełną klatkę na przekazanym obrazie (w wątku renderującym)
+     * @param frameReady    wywoływane po oddaniu każdej klatki, np. w celu zlecenia jej wyświetlenia
+     */
+    public RenderLoop(int width, int height, int targetFps,
+                      Consumer<Graphics2D> frameRenderer, Runnable frameReady) {
+        for (int i = 0; i < images.length; i++) {
+            images[i] = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        }
+        this.frameRenderer = frameRenderer;
+        this.frameReady = frameReady;
+        setTargetFps(targetFps);
+    }
+
+    public void setTargetFps(int targetFps) {
+        if (targetFps <= 0) {
+            throw new IllegalArgumentException("Target frame rate must be positive");
+        }
+        this.framePeriodNanos = TimeUnit.SECONDS.toNanos(1) / targetFps;
+    }
+
+    public synchronized void start() {
+        if (running) {
+            return;
+        }
+        running = true;
+        thread = new Thread(this::run, "render-loop");
+        thread.setDaemon(true);
+        thread.setUncaughtExceptionHandler((failed, e) -> {
+            System.err.println("Render loop stopped: " + e);
+            e.printStackTrace();
+        });
+        thread.start();
+    }
+
+    public synchronized void stop() throws InterruptedException {
+        if (!running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(thread);
+        thread.join();
+        thread = null;
+    }
+
+    /**
+     * Zleca wykonanie akcji w wątku renderującym przed następną klatką.
+     */
+    public void post(Runnable action) {
+        actions.add(action);
+    }
+
+    /**
+     * Zwraca najnowszą gotową klatkę. Obraz pozostaje nienaruszony do następnego wywołania
+     * tej metody, więc może być bezpiecznie kopiowany na ekran. Wywoływane przez jeden wątek wyświetlający.
+     */
+    public BufferedImage acquireFrame() {
+        if ((ready.get() & FRESH) != 0) {
+            front = ready.getAndSet(front) & INDEX_MASK;
+        }
+        return images[front];
+    }
+
+    private void run() {
+        long nextFrame = System.nanoTime();
+
+        while (running) {
+            Runnable action;
+            while ((action = actions.poll()) != null) {
+                try {
+                    action.run();
+                } catch (RuntimeException e) {
+                    System.err.println("Render loop action failed: " + e);
+                    e.printStackTrace();
+                }
+            }
+
+            if (renderFrame()) {
+                back = ready.getAndSet(back | FRESH) & INDEX_MASK;
+                frameReady.run();
+            }
+
+            // Przy opóźnieniu większym niż klatka harmonogram startuje od nowa zamiast nadrabiać
+            nextFrame += framePeriodNanos;
+            long wait = nextFrame - System.nanoTime();
+            if (-wait > framePeriodNanos) {
+                nextFrame = System.nanoTime();
+            }
+            while (wait > 0 && running) {
+                LockSupport.parkNanos(wait);
+                wait = nextFrame - System.nanoTime();
+            }
+        }
+    }
+
+    /**
+     * Rysuje klatkę do obrazu roboczego. Zwraca false, gdy rysowanie zakończyło się wyjątkiem.
+     */
+    private boolean renderFrame() {
+        Graphics2D graphics = images[back].createGraphics();
+        try {
+            frameRenderer.accept(graphics);
+            frameFailed = false;
+            return true;
+        } catch (RuntimeException e) {
+            if (!frameFailed) {
+                System.err.println("Frame rendering failed: " + e);
+                e.printStackTrace();
+                frameFailed = true;
+            }
+            return false;
+        } finally {
+            graphics.dispose();
+        }
+    }
+}
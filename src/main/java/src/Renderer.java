@@ -1,27 +1,155 @@
 package src;
 
-import lombok.Data;
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.Setter;
 import org.ejml.simple.SimpleMatrix;
+import src.bsp.BSPStats;
 import src.bsp.BSPTree;
+import src.bsp.BSPTreeFile;
+import src.bsp.FlatBSPTree;
+import src.bsp.SplitterHeuristic;
 import src.lighting.Light;
+import src.lighting.LightBuffer;
 import src.lighting.Material;
+import src.raster.FrameBuffer;
+import src.raster.TileRasterizer;
+import src.raster.TriangleBuffer;
 
 import java.awt.*;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
-
-@Data
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Rysuje scenę w jednym z trybów {@link VisibilityMode}. Geometria zmienia się wyłącznie przez
+ * {@link #setSceneFaces(List)}, {@link #addFace(Face)} i {@link #clearFaces()}, które unieważniają drzewo BSP;
+ * stan pomocniczy klatki nie ma akcesorów.
+ */
+@Getter
 public class Renderer {
+    // Liczba trójkątów, powyżej której cieniowanie siatki jest dzielone między wątki
+    private static final int PARALLEL_SHADING_THRESHOLD = 4096;
+
+    @Setter
     private Camera camera;
+    @Setter
     private java.awt.Graphics graphics;
+    @Getter(AccessLevel.NONE)
     private List<Face> faces;
     private BSPTree bspTree;
-    private boolean bspEnabled = false;
-    private boolean rebuildRequired = true;
+    private FlatBSPTree flatBspTree;
+    private SplitterHeuristic splitterHeuristic = SplitterHeuristic.BALANCED;
+    private BSPStats bspStats;
+    @Setter
+    // Równoległa budowa pomaga tylko przy więcej niż jednym rdzeniu
+    private boolean parallelBspBuild = Runtime.getRuntime().availableProcessors() > 1;
+    @Setter
+    private boolean cullingEnabled = true;
+    private final Frustum frustum = new Frustum();
+    private VisibilityMode visibilityMode = VisibilityMode.SUBMISSION_ORDER;
+    private long geometryVersion;
+    @Getter(AccessLevel.NONE)
+    private long bspTreeVersion = -1;
+    @Getter(AccessLevel.NONE)
+    private SplitterHeuristic bspTreeHeuristic;
+    // Katalog zapisanych drzew BSP (null - drzewo budowane zawsze od nowa)
+    private Path bspCacheDirectory;
+    @Getter(AccessLevel.NONE)
+    private boolean bspCacheWarned;
     private boolean lightingEnabled = true;
     private List<Light> lights;
+    @Setter
     private Material defaultMaterial;
 
+    // Cieniowanie wsadowe: światła i pozycja kamery spakowane raz na klatkę
+    private final LightBuffer lightBuffer = new LightBuffer();
+    @Getter(AccessLevel.NONE)
+    private float cameraX;
+    @Getter(AccessLevel.NONE)
+    private float cameraY;
+    @Getter(AccessLevel.NONE)
+    private float cameraZ;
+    @Getter(AccessLevel.NONE)
+    private int[] visibleTriangles = new int[0];
+    @Getter(AccessLevel.NONE)
+    private int[] shadedColors = new int[0];
+    @Getter(AccessLevel.NONE)
+    private final int[] faceColor = new int[1];
+
+    // Obiekty sceny odrzucane w całości przez hierarchię brył otaczających
+    private SceneBVH sceneBvh;
+    @Getter(AccessLevel.NONE)
+    private final float[] objectSphere = new float[4];
+    @Getter(AccessLevel.NONE)
+    private long[] objectOrder = new long[0];
+
+    // Poziom szczegółowości sfer wybierany co klatkę z ich rozmiaru na ekranie
+    @Setter
+    private LodSelector lodSelector = new LodSelector();
+    @Setter
+    private boolean lodEnabled = true;
+
+    // Kolory są przenoszone jako ARGB; obiekty Color powstają tylko dla Graphics
+    @Getter(AccessLevel.NONE)
+    private final ColorCache colorCache = new ColorCache();
+
+    private final FrameMetrics metrics = new FrameMetrics();
+
+    // Transformacja wierzchołków: macierz projekcja * widok liczona raz na klatkę
+    @Getter(AccessLevel.NONE)
+    private final float[] viewProjection = new float[16];
+    @Getter(AccessLevel.NONE)
+    private long frame;
+    @Getter(AccessLevel.NONE)
+    private final Map<Mesh, VertexTransform> meshTransforms = new IdentityHashMap<>();
+    @Getter(AccessLevel.NONE)
+    private Mesh lastMesh;
+    @Getter(AccessLevel.NONE)
+    private VertexTransform lastTransform;
+    // Instancje: macierz projekcja * widok * model i wyniki liczone od nowa dla każdej instancji
+    @Getter(AccessLevel.NONE)
+    private final float[] instanceMatrix = new float[16];
+    @Getter(AccessLevel.NONE)
+    private final VertexTransform instanceTransform = new VertexTransform();
+    @Getter(AccessLevel.NONE)
+    private float[] instanceNormals = new float[0];
+    @Getter(AccessLevel.NONE)
+    private float[] instanceCentroids = new float[0];
+    @Getter(AccessLevel.NONE)
+    private int[] xPoints = new int[4];
+    @Getter(AccessLevel.NONE)
+    private int[] yPoints = new int[4];
+    @Getter(AccessLevel.NONE)
+    private float projectedX;
+    @Getter(AccessLevel.NONE)
+    private float projectedY;
+    @Getter(AccessLevel.NONE)
+    private float projectedW;
+    @Getter(AccessLevel.NONE)
+    private float[] polygonX = new float[4];
+    @Getter(AccessLevel.NONE)
+    private float[] polygonY = new float[4];
+    @Getter(AccessLevel.NONE)
+    private float[] polygonW = new float[4];
+
+    // Bufor ramki i głębokości dla trybu Z_BUFFER
+    private FrameBuffer frameBuffer;
+    @Getter(AccessLevel.NONE)
+    private TileRasterizer tileRasterizer;
+    @Getter(AccessLevel.NONE)
+    private final TriangleBuffer triangleBuffer = new TriangleBuffer();
+    @Setter
+    private boolean parallelRasterization = true;
+
     public Renderer(Camera camera, java.awt.Graphics graphics) {
         this.camera = camera;
         this.graphics = graphics;
@@ -30,10 +158,14 @@ public class Renderer {
 
         // Domyślny materiał
         this.defaultMaterial = new Material(0.2f, 0.7f, 0.5f, 32);
+        lightBuffer.setMaterialResponse(defaultMaterial.getDirectResponse());
+
+        prepareFrame();
     }
 
     public void addLight(Light light) {
         lights.add(light);
+        lightBuffer.update(lights);
     }
 
     public void setLightingEnabled(boolean enabled) {
@@ -41,39 +173,141 @@ public class Renderer {
     }
 
     public void setBSPEnabled(boolean enabled) {
-        this.bspEnabled = enabled;
-        if (enabled) {
+        setVisibilityMode(enabled ? VisibilityMode.BSP : VisibilityMode.SUBMISSION_ORDER);
+    }
+
+    public void setVisibilityMode(VisibilityMode mode) {
+        this.visibilityMode = mode;
+        if (mode == VisibilityMode.BSP) {
             ensureBSPTreeBuilt();
         }
     }
 
+    public void setSplitterHeuristic(SplitterHeuristic heuristic) {
+        this.splitterHeuristic = heuristic;
+    }
+
+    /**
+     * Włącza zapis zbudowanych drzew BSP w {@code directory} i ich wczytywanie przy kolejnych
+     * uruchomieniach dla tej samej geometrii; null wyłącza.
+     */
+    public void setBspCacheDirectory(Path directory) {
+        this.bspCacheDirectory = directory;
+        this.bspCacheWarned = false;
+    }
+
+    /**
+     * Rejestruje geometrię sceny. Drzewo BSP jest budowane przy pierwszym renderowaniu
+     * i używane ponownie we wszystkich kolejnych klatkach, dopóki geometria się nie zmieni.
+     */
+    public void setSceneFaces(List<Face> sceneFaces) {
+        faces.clear();
+        faces.addAll(sceneFaces);
+        markGeometryChanged();
+    }
+
+    /**
+     * Zarejestrowane ściany, tylko do odczytu.
+     */
+    public List<Face> getFaces() {
+        return Collections.unmodifiableList(faces);
+    }
+
     public void addFace(Face face) {
         faces.add(face);
-        rebuildRequired = true;
+        markGeometryChanged();
     }
 
     public void clearFaces() {
         faces.clear();
-        bspTree = null;
-        rebuildRequired = false;
+        markGeometryChanged();
+    }
+
+    /**
+     * Zgłasza zmianę zarejestrowanych ścian (np. po modyfikacji ich wierzchołków).
+     */
+    public void markGeometryChanged() {
+        geometryVersion++;
     }
 
     private void ensureBSPTreeBuilt() {
-        if (rebuildRequired || bspTree == null) {
-            bspTree = new BSPTree(new ArrayList<>(faces));
-            rebuildRequired = false;
+        if (bspTreeVersion == geometryVersion && bspTreeHeuristic == splitterHeuristic) {
+            return;
+        }
+
+        metrics.begin(FrameMetrics.Stage.BSP_BUILD);
+        try {
+            bspTree = null;
+            flatBspTree = null;
+            bspStats = null;
+            if (!faces.isEmpty()) {
+                List<Face> input = new ArrayList<>(faces);
+                if (bspCacheDirectory != null) {
+                    loadOrBuildBSPTree(input);
+                } else {
+                    buildBSPTree(input);
+                }
+            }
+        } finally {
+            bspTreeVersion = geometryVersion;
+            bspTreeHeuristic = splitterHeuristic;
+            metrics.end(FrameMetrics.Stage.BSP_BUILD);
         }
     }
 
-    public void drawShape(Shape shape) {
-        if (shape instanceof Face) {
-            Face face = (Face) shape;
+    private void buildBSPTree(List<Face> input) {
+        bspTree = new BSPTree(input, splitterHeuristic, parallelBspBuild);
+        flatBspTree = new FlatBSPTree(bspTree);
+        bspStats = bspTree.getStats();
+    }
 
-            if (bspEnabled) {
-                addFace(face);
-            } else {
-                drawFaceDirectly(face);
+    /**
+     * Wczytuje drzewo zapisane dla tej samej geometrii i heurystyki albo buduje je i zapisuje.
+     * Wczytane drzewo nie ma postaci {@link BSPTree}; czas odczytu trafia do statystyk jako czas budowy.
+     * Błąd odczytu lub zapisu nie przerywa renderowania: drzewo zostaje w pamięci, a problem
+     * jest zgłaszany na {@code System.err} jeden raz.
+     */
+    private void loadOrBuildBSPTree(List<Face> input) {
+        Surface[] surfaces = BSPTreeFile.surfacesOf(input);
+        long key = BSPTreeFile.sceneKey(input, surfaces, splitterHeuristic);
+        Path file = bspCacheDirectory.resolve(String.format("bsp-%016x.bin", key));
+
+        try {
+            long start = System.nanoTime();
+            BSPStats stats = new BSPStats();
+            flatBspTree = BSPTreeFile.load(file, surfaces, key, stats);
+            if (flatBspTree != null) {
+                stats.setBuildTimeNanos(System.nanoTime() - start);
+                bspStats = stats;
+                return;
             }
+        } catch (IOException e) {
+            warnBspCache("Cannot read BSP cache " + file, e);
+        }
+
+        buildBSPTree(input);
+        try {
+            Files.createDirectories(bspCacheDirectory);
+            BSPTreeFile.write(file, flatBspTree, bspStats, surfaces, key);
+        } catch (IOException e) {
+            warnBspCache("Cannot write BSP cache " + file, e);
+        }
+    }
+
+    private void warnBspCache(String message, IOException e) {
+        if (!bspCacheWarned) {
+            bspCacheWarned = true;
+            System.err.println(message + ": " + e);
+        }
+    }
+
+    /**
+     * Rysuje kształt od razu. Geometria sortowana przez BSP jest rejestrowana przez
+     * {@link #setSceneFaces(List)} i rysowana w {@link #renderWithBSP()}.
+     */
+    public void drawShape(Shape shape) {
+        if (shape instanceof Face) {
+            fillFace((Face) shape);
         } else {
             for (Edge edge : shape.getEdges()) {
                 drawEdge(edge);
@@ -81,16 +315,456 @@ public class Renderer {
         }
     }
 
-    private void drawFaceDirectly(Face face) {
-        fillFace(face);
-    }
-
+    /**
+     * Rysuje zarejestrowaną geometrię w kolejności wyznaczonej przez drzewo BSP.
+     * Klatka, w której zmieniła się tylko kamera, kosztuje wyłącznie przejście drzewa.
+     * Widoczne obiekty z {@link #setSceneObjects(List)} są traktowane jako ruchome: co klatkę trafiają
+     * do komórek istniejącego drzewa i są rysowane w trakcie jego przejścia, bez przebudowy.
+     */
     public void renderWithBSP() {
         ensureBSPTreeBuilt();
+        int visibleObjects = cullSceneObjects();
+
+        if (flatBspTree == null) {
+            drawObjectsBackToFront(visibleObjects);
+            return;
+        }
+
+        metrics.begin(FrameMetrics.Stage.TRAVERSAL);
+        try {
+            flatBspTree.clearDynamicObjects();
+            for (int k = 0; k < visibleObjects; k++) {
+                SceneObject object = sceneBvh.getVisibleObject(k);
+                object.getBoundingSphere(objectSphere, 0);
+                flatBspTree.insertDynamicObject(object, objectSphere[0], objectSphere[1], objectSphere[2],
+                        distanceToCameraSquared(objectSphere));
+            }
+            flatBspTree.render(this, cameraX, cameraY, cameraZ, cullingEnabled ? frustum : null, cullingEnabled);
+        } finally {
+            metrics.end(FrameMetrics.Stage.TRAVERSAL);
+        }
+
+        metrics.add(FrameMetrics.Counter.CULLED_FACES, flatBspTree.getCulledFaces());
+        metrics.add(FrameMetrics.Counter.SPLIT_FACES, bspStats.getSplitCount());
+    }
+
+    /**
+     * Rejestruje obiekty rysowane przez {@link #renderObjects()} i buduje nad nimi hierarchię.
+     * Ruch obiektów nie wymaga ponownej rejestracji - hierarchia jest dopasowywana co klatkę.
+     */
+    public void setSceneObjects(List<? extends SceneObject> objects) {
+        sceneBvh = new SceneBVH(objects);
+    }
+
+    /**
+     * Rysuje zarejestrowane obiekty, których kule otaczające przecinają ostrosłup widzenia
+     * (wszystkie, gdy odrzucanie jest wyłączone). Obiekty poza nim nie kosztują żadnej pracy na ścianach.
+     */
+    public void renderObjects() {
+        int visibleCount = cullSceneObjects();
+        for (int k = 0; k < visibleCount; k++) {
+            sceneBvh.getVisibleObject(k).draw(this);
+        }
+    }
+
+    private int cullSceneObjects() {
+        if (sceneBvh == null) {
+            return 0;
+        }
+
+        int visibleCount;
+        metrics.begin(FrameMetrics.Stage.TRAVERSAL);
+        try {
+            sceneBvh.refit();
+            visibleCount = sceneBvh.cull(cullingEnabled ? frustum : null);
+        } finally {
+            metrics.end(FrameMetrics.Stage.TRAVERSAL);
+        }
+        metrics.add(FrameMetrics.Counter.CULLED_OBJECTS, sceneBvh.getCulledObjects());
+        return visibleCount;
+    }
+
+    /**
+     * Algorytm malarza dla samych obiektów (gdy nie ma geometrii statycznej): klucz to bity
+     * nieujemnej odległości (monotoniczne jak liczba) w starszej połowie i indeks w młodszej.
+     */
+    private void drawObjectsBackToFront(int visibleCount) {
+        if (objectOrder.length < visibleCount) {
+            objectOrder = new long[visibleCount];
+        }
+
+        for (int k = 0; k < visibleCount; k++) {
+            sceneBvh.getVisibleObject(k).getBoundingSphere(objectSphere, 0);
+            objectOrder[k] = ((long) Float.floatToIntBits(distanceToCameraSquared(objectSphere)) << 32) | k;
+        }
+        Arrays.sort(objectOrder, 0, visibleCount);
+
+        for (int k = visibleCount - 1; k >= 0; k--) {
+            sceneBvh.getVisibleObject((int) objectOrder[k]).draw(this);
+        }
+    }
+
+    private float distanceToCameraSquared(float[] point) {
+        float dx = point[0] - cameraX;
+        float dy = point[1] - cameraY;
+        float dz = point[2] - cameraZ;
+        return dx * dx + dy * dy + dz * dz;
+    }
+
+    /**
+     * Rozpoczyna klatkę: macierz projekcja * widok (przeliczana przez kamerę tylko po zmianie)
+     * jest kopiowana raz i używana do rzutowania wszystkich wierzchołków aż do następnego wywołania.
+     */
+    public void beginFrame() {
+        metrics.beginFrame();
+        prepareFrame();
+    }
+
+    /**
+     * Stan klatki bez otwierania pomiarów; konstruktor przygotowuje w ten sposób rysowanie
+     * poza pętlą klatek.
+     */
+    private void prepareFrame() {
+        System.arraycopy(camera.getViewProjection(), 0, viewProjection, 0, viewProjection.length);
+        frame++;
+        frustum.update(camera);
+
+        // Siatki nieużyte w poprzedniej klatce (np. po zmianie poziomu LOD lub geometrii) zwalniają swoje bufory
+        meshTransforms.values().removeIf(transform -> transform.getFrame() < frame - 1);
+        lastMesh = null;
+        lastTransform = null;
+
+        cameraX = camera.getPositionX();
+        cameraY = camera.getPositionY();
+        cameraZ = camera.getPositionZ();
+        lightBuffer.update(lights);
+
+        if (visibilityMode == VisibilityMode.Z_BUFFER) {
+            ensureFrameBuffer();
+            frameBuffer.clear();
+            triangleBuffer.clear();
+        }
+    }
+
+    /**
+     * Kończy klatkę. W trybie Z_BUFFER rasteryzuje zebrane trójkąty (w kafelkach,
+     * równolegle, gdy {@code parallelRasterization}) i kopiuje bufor ramki na {@code graphics};
+     * przezroczyste piksele zachowują to, co narysowano wcześniej.
+     */
+    public void endFrame() {
+        if (visibilityMode == VisibilityMode.Z_BUFFER && frameBuffer != null) {
+            metrics.begin(FrameMetrics.Stage.POLYGON_FILL);
+            try {
+                if (parallelRasterization) {
+                    tileRasterizer.rasterize(triangleBuffer);
+                } else {
+                    tileRasterizer.rasterizeSerial(triangleBuffer);
+                }
+                triangleBuffer.clear();
+
+                graphics.drawImage(frameBuffer.getImage(), 0, 0, null);
+            } finally {
+                metrics.end(FrameMetrics.Stage.POLYGON_FILL);
+            }
+        }
+
+        metrics.endFrame();
+    }
+
+    private void ensureFrameBuffer() {
+        int width = camera.getWIDTH();
+        int height = camera.getHEIGHT();
+
+        if (frameBuffer == null || frameBuffer.getWidth() != width || frameBuffer.getHeight() != height) {
+            frameBuffer = new FrameBuffer(width, height);
+            tileRasterizer = new TileRasterizer(frameBuffer);
+        }
+    }
+
+    /**
+     * Zwraca wierzchołki siatki zrzutowane w bieżącej klatce, licząc je przy pierwszym użyciu.
+     */
+    public VertexTransform transformMesh(Mesh mesh) {
+        if (mesh != lastMesh) {
+            lastTransform = meshTransforms.get(mesh);
+            if (lastTransform == null) {
+                lastTransform = new VertexTransform();
+                meshTransforms.put(mesh, lastTransform);
+            }
+            lastMesh = mesh;
+        }
+
+        if (lastTransform.getFrame() != frame) {
+            metrics.begin(FrameMetrics.Stage.VERTEX_TRANSFORM);
+            try {
+                lastTransform.project(mesh.getPositions(), mesh.getVertexCount(), viewProjection,
+                        camera.getWIDTH(), camera.getHEIGHT(), frame);
+            } finally {
+                metrics.end(FrameMetrics.Stage.VERTEX_TRANSFORM);
+            }
+        }
+        return lastTransform;
+    }
+
+    /**
+     * Rysuje siatkę indeksowaną w kolejności trójkątów, bez tworzenia obiektów {@link Face}.
+     * Najpierw zbierane są widoczne trójkąty, potem cieniowane jednym przebiegiem wsadowym.
+     */
+    public void drawMesh(Mesh mesh, Color color) {
+        drawMesh(mesh, color.getRGB(), defaultMaterial);
+    }
+
+    public void drawMesh(Mesh mesh, int argb) {
+        drawMesh(mesh, argb, defaultMaterial);
+    }
+
+    /**
+     * Rysuje siatkę z kolorem i materiałem obiektu (materiał domyślny, gdy nie jest ustawiony).
+     */
+    public void drawMesh(Mesh mesh, Surface surface) {
+        drawMesh(mesh, surface.getColor().getRGB(), materialOf(surface));
+    }
+
+    private void drawMesh(Mesh mesh, int argb, Material material) {
+        VertexTransform transform = transformMesh(mesh);
+        int visibleCount = collectVisibleTriangles(transform, mesh, false);
+
+        boolean lit = lightingEnabled && !lightBuffer.isEmpty();
+        if (lit) {
+            metrics.begin(FrameMetrics.Stage.LIGHTING);
+            try {
+                shadeTriangles(mesh.getNormals(), mesh.getCentroids(), argb, material, visibleCount);
+            } finally {
+                metrics.end(FrameMetrics.Stage.LIGHTING);
+            }
+        }
+
+        fillVisibleTriangles(transform, mesh.getIndices(), visibleCount, lit, argb);
+    }
 
-        if (bspTree != null && !faces.isEmpty()) {
-            bspTree.render(this, camera.getCameraPosition());
-            clearFaces();
+    /**
+     * Rysuje instancję: wierzchołki współdzielonej siatki są rzutowane macierzą
+     * projekcja * widok * model, a normalne i środki przekształcane tylko dla widocznych trójkątów.
+     * Nie powstają żadne obiekty ani kopie siatki w przestrzeni świata.
+     */
+    public void drawInstance(Instance instance) {
+        drawTransformed(instance.getMesh(), instance.getTransform(), instance.getSurface());
+    }
+
+    /**
+     * Rysuje siatkę w przestrzeni obiektu przekształconą macierzą modelu 3x4 (zapisaną wierszami).
+     */
+    private void drawTransformed(Mesh mesh, float[] model, Surface surface) {
+        multiplyAffine(viewProjection, model, instanceMatrix);
+
+        metrics.begin(FrameMetrics.Stage.VERTEX_TRANSFORM);
+        try {
+            instanceTransform.project(mesh.getPositions(), mesh.getVertexCount(), instanceMatrix,
+                    camera.getWIDTH(), camera.getHEIGHT(), frame);
+        } finally {
+            metrics.end(FrameMetrics.Stage.VERTEX_TRANSFORM);
+        }
+
+        // Odbicie lustrzane (ujemny wyznacznik) odwraca kolejność wierzchołków na ekranie
+        boolean mirrored = determinant(model) < 0;
+        int visibleCount = collectVisibleTriangles(instanceTransform, mesh, mirrored);
+
+        int argb = surface.getColor().getRGB();
+        boolean lit = lightingEnabled && !lightBuffer.isEmpty();
+        if (lit) {
+            metrics.begin(FrameMetrics.Stage.LIGHTING);
+            try {
+                transformTriangleAttributes(mesh, model, mirrored, visibleCount);
+                shadeTriangles(instanceNormals, instanceCentroids, argb, materialOf(surface), visibleCount);
+            } finally {
+                metrics.end(FrameMetrics.Stage.LIGHTING);
+            }
+        }
+
+        fillVisibleTriangles(instanceTransform, mesh.getIndices(), visibleCount, lit, argb);
+    }
+
+    /**
+     * Zapisuje w {@code visibleTriangles} trójkąty przed kamerą i (przy włączonym odrzucaniu)
+     * zwrócone do niej przodem. Zwraca ich liczbę.
+     */
+    private int collectVisibleTriangles(VertexTransform transform, Mesh mesh, boolean mirrored) {
+        int[] indices = mesh.getIndices();
+        int triangleCount = mesh.getTriangleCount();
+
+        if (visibleTriangles.length < triangleCount) {
+            visibleTriangles = new int[triangleCount];
+            shadedColors = new int[triangleCount];
+        }
+
+        int visibleCount = 0;
+        metrics.begin(FrameMetrics.Stage.TRAVERSAL);
+        try {
+            for (int t = 0; t < triangleCount; t++) {
+                if (!loadTriangle(transform, indices, t)) {
+                    continue;
+                }
+
+                // Trójkąty siatki są zorientowane na zewnątrz: odwrócone od kamery mają na ekranie ujemne pole
+                if (cullingEnabled) {
+                    float area = signedScreenArea();
+                    if (mirrored ? area >= 0 : area <= 0) {
+                        continue;
+                    }
+                }
+
+                visibleTriangles[visibleCount++] = t;
+            }
+        } finally {
+            metrics.end(FrameMetrics.Stage.TRAVERSAL);
+        }
+        metrics.add(FrameMetrics.Counter.FACES, visibleCount);
+        metrics.add(FrameMetrics.Counter.CULLED_FACES, triangleCount - visibleCount);
+        return visibleCount;
+    }
+
+    private void fillVisibleTriangles(VertexTransform transform, int[] indices, int visibleCount,
+                                      boolean lit, int argb) {
+        metrics.begin(FrameMetrics.Stage.POLYGON_FILL);
+        try {
+            for (int k = 0; k < visibleCount; k++) {
+                loadTriangle(transform, indices, visibleTriangles[k]);
+                fillPolygon(3, lit ? shadedColors[k] : argb);
+            }
+        } finally {
+            metrics.end(FrameMetrics.Stage.POLYGON_FILL);
+        }
+    }
+
+    /**
+     * Normalne i środki widocznych trójkątów w przestrzeni świata, zapisane pod indeksami trójkątów
+     * w {@code instanceNormals}/{@code instanceCentroids}. Normalne są mnożone przez macierz
+     * dopełnień algebraicznych części 3x3 (równą wyznacznik * odwrotność transponowana), więc
+     * pozostają prostopadłe także przy skalowaniu niejednorodnym.
+     */
+    private void transformTriangleAttributes(Mesh mesh, float[] m, boolean mirrored, int visibleCount) {
+        int length = mesh.getTriangleCount() * 3;
+        if (instanceNormals.length < length) {
+            instanceNormals = new float[length];
+            instanceCentroids = new float[length];
+        }
+
+        float c00 = m[5] * m[10] - m[6] * m[9];
+        float c01 = m[6] * m[8] - m[4] * m[10];
+        float c02 = m[4] * m[9] - m[5] * m[8];
+        float c10 = m[2] * m[9] - m[1] * m[10];
+        float c11 = m[0] * m[10] - m[2] * m[8];
+        float c12 = m[1] * m[8] - m[0] * m[9];
+        float c20 = m[1] * m[6] - m[2] * m[5];
+        float c21 = m[2] * m[4] - m[0] * m[6];
+        float c22 = m[0] * m[5] - m[1] * m[4];
+        float sign = mirrored ? -1 : 1;
+
+        float[] normals = mesh.getNormals();
+        float[] centroids = mesh.getCentroids();
+        for (int k = 0; k < visibleCount; k++) {
+            int i = visibleTriangles[k] * 3;
+
+            float nx = normals[i], ny = normals[i + 1], nz = normals[i + 2];
+            float wx = c00 * nx + c01 * ny + c02 * nz;
+            float wy = c10 * nx + c11 * ny + c12 * nz;
+            float wz = c20 * nx + c21 * ny + c22 * nz;
+            float normalLength = (float) Math.sqrt(wx * wx + wy * wy + wz * wz);
+            float scale = normalLength > 1e-12f ? sign / normalLength : 0;
+            instanceNormals[i] = wx * scale;
+            instanceNormals[i + 1] = wy * scale;
+            instanceNormals[i + 2] = wz * scale;
+
+            float x = centroids[i], y = centroids[i + 1], z = centroids[i + 2];
+            instanceCentroids[i] = m[0] * x + m[1] * y + m[2] * z + m[3];
+            instanceCentroids[i + 1] = m[4] * x + m[5] * y + m[6] * z + m[7];
+            instanceCentroids[i + 2] = m[8] * x + m[9] * y + m[10] * z + m[11];
+        }
+    }
+
+    /**
+     * {@code out} = {@code a} (4x4) * {@code model} (3x4 uzupełniona wierszem 0 0 0 1), wierszami.
+     */
+    private static void multiplyAffine(float[] a, float[] model, float[] out) {
+        for (int row = 0; row < 4; row++) {
+            float a0 = a[row * 4], a1 = a[row * 4 + 1], a2 = a[row * 4 + 2], a3 = a[row * 4 + 3];
+            for (int column = 0; column < 4; column++) {
+                out[row * 4 + column] = a0 * model[column] + a1 * model[4 + column] + a2 * model[8 + column]
+                        + (column == 3 ? a3 : 0);
+            }
+        }
+    }
+
+    private static float determinant(float[] m) {
+        return m[0] * (m[5] * m[10] - m[6] * m[9])
+                - m[1] * (m[4] * m[10] - m[6] * m[8])
+                + m[2] * (m[4] * m[9] - m[5] * m[8]);
+    }
+
+    /**
+     * Rysuje sferę siatką poziomu szczegółowości dobranego do jej promienia na ekranie.
+     * Wybrany poziom jest zapamiętywany w sferze jako punkt wyjścia histerezy w następnej klatce.
+     */
+    public void drawSphere(Sphere sphere) {
+        int level = 0;
+        if (lodEnabled) {
+            float radiusPixels = projectedRadius(sphere.getCenterX(), sphere.getCenterY(), sphere.getCenterZ(),
+                    sphere.getRadius());
+            level = lodSelector.select(sphere, radiusPixels, sphere.getLodLevel());
+        }
+        sphere.setLodLevel(level);
+        drawTransformed(sphere.getLodMesh(level), sphere.getTransform(), sphere.getSurface());
+    }
+
+    /**
+     * Promień kuli na ekranie w pikselach; nieskończony, gdy kamera jest bliżej środka niż promień
+     * (lub środek jest za kamerą), bo wtedy kula może zajmować dowolnie dużą część ekranu.
+     */
+    public float projectedRadius(float x, float y, float z, float radius) {
+        float[] m = viewProjection;
+        float w = m[12] * x + m[13] * y + m[14] * z + m[15];
+
+        // w = k * z_widoku, więc z_widoku <= promień odpowiada w <= k * promień
+        if (w <= camera.getPerspectiveFactor() * radius) {
+            return Float.POSITIVE_INFINITY;
+        }
+        return radius / w * camera.getHEIGHT() / 2;
+    }
+
+    private boolean loadTriangle(VertexTransform transform, int[] indices, int triangle) {
+        for (int corner = 0; corner < 3; corner++) {
+            int vertex = indices[triangle * 3 + corner];
+            if (!transform.isVisible(vertex)) {
+                return false;
+            }
+            polygonX[corner] = transform.getScreenX()[vertex];
+            polygonY[corner] = transform.getScreenY()[vertex];
+            polygonW[corner] = transform.getClipW()[vertex];
+        }
+        return true;
+    }
+
+    /**
+     * Materiał powierzchni; materiał silniejszy niż dotąd widziane poszerza zasięgi świateł.
+     */
+    private Material materialOf(Surface surface) {
+        Material material = surface.getMaterial();
+        if (material == null) {
+            material = defaultMaterial;
+        }
+        if (material.getDirectResponse() > lightBuffer.getMaterialResponse()) {
+            lightBuffer.setMaterialResponse(material.getDirectResponse());
+            lightBuffer.update(lights);
+        }
+        return material;
+    }
+
+    private void shadeTriangles(float[] normals, float[] centroids, int baseColor, Material material, int count) {
+        if (count >= PARALLEL_SHADING_THRESHOLD) {
+            ForkJoinPool.commonPool().invoke(new ShadeTask(normals, centroids, baseColor, material, 0, count));
+        } else {
+            material.shadeBatch(normals, centroids, visibleTriangles, 0, count,
+                    baseColor, lightBuffer, cameraX, cameraY, cameraZ, shadedColors);
         }
     }
 
@@ -102,75 +776,150 @@ public class Renderer {
             return;
         }
 
-        int[] xPoints = new int[numVertices];
-        int[] yPoints = new int[numVertices];
+        if (!projectFace(face)) {
+            return;
+        }
 
-        for (int i = 0; i < numVertices; i++) {
-            SimpleMatrix point = convertToHomogeneousCoordinates(edges.get(i).getStart());
-            SimpleMatrix pointView = camera.getViewMatrix().mult(point);
+        int fillColor = face.getColor().getRGB();
 
-            if (pointView.get(2) <= 0) {
-                return;
+        if (lightingEnabled && !lightBuffer.isEmpty()) {
+            metrics.begin(FrameMetrics.Stage.LIGHTING);
+            try {
+                materialOf(face.getSurface()).shadeBatch(face.getNormal(), face.getCentroid(), null, 0, 1,
+                        fillColor, lightBuffer, cameraX, cameraY, cameraZ, faceColor);
+                fillColor = faceColor[0];
+            } finally {
+                metrics.end(FrameMetrics.Stage.LIGHTING);
             }
+        }
 
-            SimpleMatrix pointClip = camera.getProjectionMatrix().mult(pointView);
-            float xNdc = (float) (pointClip.get(0) / pointClip.get(3));
-            float yNdc = (float) (pointClip.get(1) / pointClip.get(3));
+        metrics.begin(FrameMetrics.Stage.POLYGON_FILL);
+        try {
+            fillPolygon(numVertices, fillColor);
+        } finally {
+            metrics.end(FrameMetrics.Stage.POLYGON_FILL);
+        }
+        metrics.add(FrameMetrics.Counter.FACES, 1);
+    }
 
-            int screenWidth = camera.getWIDTH();
-            int screenHeight = camera.getHEIGHT();
+    /**
+     * Wypełnia wielokąt zapisany w {@code polygonX}/{@code polygonY}/{@code polygonW}:
+     * w trybie Z_BUFFER dodaje go jako wachlarz trójkątów do listy rasteryzowanej w {@link #endFrame()},
+     * w pozostałych rysuje przez {@code graphics}.
+     */
+    private void fillPolygon(int numVertices, int argb) {
+        if (visibilityMode == VisibilityMode.Z_BUFFER) {
+            float d0 = 1.0f / polygonW[0];
+
+            for (int i = 1; i < numVertices - 1; i++) {
+                triangleBuffer.add(
+                        polygonX[0], polygonY[0], d0,
+                        polygonX[i], polygonY[i], 1.0f / polygonW[i],
+                        polygonX[i + 1], polygonY[i + 1], 1.0f / polygonW[i + 1],
+                        argb);
+            }
+            return;
+        }
 
-            xPoints[i] = (int) (screenWidth / 2 + xNdc * screenHeight / 2);
-            yPoints[i] = (int) (screenHeight / 2 - yNdc * screenHeight / 2);
+        for (int i = 0; i < numVertices; i++) {
+            xPoints[i] = (int) polygonX[i];
+            yPoints[i] = (int) polygonY[i];
         }
 
         Color oldColor = graphics.getColor();
+        graphics.setColor(colorCache.get(argb));
+        graphics.fillPolygon(xPoints, yPoints, numVertices);
+        graphics.setColor(oldColor);
+    }
 
-        if (lightingEnabled && !lights.isEmpty()) {
-            Color litColor = face.getColor();
-
-            for (Light light : lights) {
-                Color lightContribution = defaultMaterial.calculatePhongColor(face, camera.getCameraPosition(), light);
-
-                litColor = new Color(
-                        Math.min(255, litColor.getRed() + lightContribution.getRed()),
-                        Math.min(255, litColor.getGreen() + lightContribution.getGreen()),
-                        Math.min(255, litColor.getBlue() + lightContribution.getBlue())
-                );
+    /**
+     * Wypełnia {@code polygonX}/{@code polygonY}/{@code polygonW} współrzędnymi ekranowymi ściany.
+     * Ściany pochodzące z siatki korzystają ze wspólnej transformacji wierzchołków.
+     */
+    private boolean projectFace(Face face) {
+        List<Edge> edges = face.getEdges();
+        int numVertices = edges.size();
+        ensurePointCapacity(numVertices);
+
+        Mesh mesh = face.getSourceMesh();
+        if (mesh != null) {
+            VertexTransform transform = transformMesh(mesh);
+            int triangle = face.getSourceTriangle();
+
+            for (int i = 0; i < numVertices; i++) {
+                // Ściana z siatki to trójkąt z powtórzonym pierwszym wierzchołkiem
+                int vertex = mesh.getIndex(triangle, i % 3);
+                if (!transform.isVisible(vertex)) {
+                    return false;
+                }
+                polygonX[i] = transform.getScreenX()[vertex];
+                polygonY[i] = transform.getScreenY()[vertex];
+                polygonW[i] = transform.getClipW()[vertex];
             }
+            return true;
+        }
 
-            graphics.setColor(litColor);
-        } else {
-            graphics.setColor(face.getColor());
+        for (int i = 0; i < numVertices; i++) {
+            SimpleMatrix start = edges.get(i).getStart();
+            if (!projectPoint((float) start.get(0), (float) start.get(1), (float) start.get(2))) {
+                return false;
+            }
+            polygonX[i] = projectedX;
+            polygonY[i] = projectedY;
+            polygonW[i] = projectedW;
         }
+        return true;
+    }
 
-        graphics.fillPolygon(xPoints, yPoints, numVertices);
+    private void ensurePointCapacity(int numVertices) {
+        if (xPoints.length < numVertices) {
+            xPoints = new int[numVertices];
+            yPoints = new int[numVertices];
+            polygonX = new float[numVertices];
+            polygonY = new float[numVertices];
+            polygonW = new float[numVertices];
+        }
+    }
 
-        graphics.setColor(oldColor);
+    private float signedScreenArea() {
+        return (polygonX[1] - polygonX[0]) * (polygonY[2] - polygonY[0])
+                - (polygonY[1] - polygonY[0]) * (polygonX[2] - polygonX[0]);
     }
-    public void drawLightSource(Light light) {
-        SimpleMatrix lightPos = new SimpleMatrix(3, 1);
-        lightPos.set(0, 0, light.getPosition().get(0));
-        lightPos.set(1, 0, light.getPosition().get(1));
-        lightPos.set(2, 0, light.getPosition().get(2));
 
-        SimpleMatrix point = convertToHomogeneousCoordinates(lightPos);
-        SimpleMatrix pointView = camera.getViewMatrix().mult(point);
+    /**
+     * Rzutuje pojedynczy punkt macierzą z {@link #beginFrame()}; wynik trafia do
+     * {@code projectedX}/{@code projectedY}/{@code projectedW}. Zwraca false, gdy punkt jest za kamerą.
+     */
+    private boolean projectPoint(float x, float y, float z) {
+        float[] m = viewProjection;
+        float w = m[12] * x + m[13] * y + m[14] * z + m[15];
 
-        // Sprawdź czy światło jest przed kamerą
-        if (pointView.get(2) <= 0) {
-            return;
+        if (w <= 0) {
+            return false;
         }
 
-        SimpleMatrix pointClip = camera.getProjectionMatrix().mult(pointView);
-        float xNdc = (float) (pointClip.get(0) / pointClip.get(3));
-        float yNdc = (float) (pointClip.get(1) / pointClip.get(3));
+        float xNdc = (m[0] * x + m[1] * y + m[2] * z + m[3]) / w;
+        float yNdc = (m[4] * x + m[5] * y + m[6] * z + m[7]) / w;
 
         int screenWidth = camera.getWIDTH();
         int screenHeight = camera.getHEIGHT();
 
-        int screenX = (int) (screenWidth / 2 + xNdc * screenHeight / 2);
-        int screenY = (int) (screenHeight / 2 - yNdc * screenHeight / 2);
+        projectedX = screenWidth / 2 + xNdc * screenHeight / 2;
+        projectedY = screenHeight / 2 - yNdc * screenHeight / 2;
+        projectedW = w;
+        return true;
+    }
+
+    public void drawLightSource(Light light) {
+        SimpleMatrix lightPos = light.getPosition();
+
+        // Sprawdź czy światło jest przed kamerą
+        if (!projectPoint((float) lightPos.get(0), (float) lightPos.get(1), (float) lightPos.get(2))) {
+            return;
+        }
+
+        int screenX = (int) projectedX;
+        int screenY = (int) projectedY;
 
         Color oldColor = graphics.getColor();
         graphics.setColor(light.getColor());
@@ -179,11 +928,8 @@ public class Renderer {
         graphics.fillOval(screenX - lightSize/2, screenY - lightSize/2, lightSize, lightSize);
 
         int glowSize = 12;
-        graphics.setColor(new Color(
-                light.getColor().getRed(),
-                light.getColor().getGreen(),
-                light.getColor().getBlue(),
-                128)); 
+        // Poświata: kolor światła z przezroczystością 128
+        graphics.setColor(colorCache.get((light.getColor().getRGB() & 0x00FFFFFF) | 0x80000000));
         graphics.fillOval(screenX - glowSize/2, screenY - glowSize/2, glowSize, glowSize);
 
         graphics.setColor(oldColor);
@@ -191,37 +937,57 @@ public class Renderer {
     
     
     public void drawEdge(Edge edge) {
-        SimpleMatrix start = convertToHomogeneousCoordinates(edge.getStart());
-        SimpleMatrix end = convertToHomogeneousCoordinates(edge.getEnd());
-        // Macierz widoku
-        SimpleMatrix startView = camera.getViewMatrix().mult(start);
-        SimpleMatrix endView = camera.getViewMatrix().mult(end);
+        SimpleMatrix start = edge.getStart();
+        SimpleMatrix end = edge.getEnd();
+
         // Sprawdzenie, czy punkty są przed kamerą (z > 0 w przestrzeni kamery)
-        if (startView.get(2) <= 0 || endView.get(2) <= 0) {
+        if (!projectPoint((float) start.get(0), (float) start.get(1), (float) start.get(2))) {
             return; // Punkt jest za kamerą, nie rysujemy
         }
-        // Macierz projekcji
-        SimpleMatrix startClip = camera.getProjectionMatrix().mult(startView);
-        SimpleMatrix endClip = camera.getProjectionMatrix().mult(endView);
-        float startXNdc = (float) (startClip.get(0) / startClip.get(3));
-        float startYNdc = (float) (startClip.get(1) / startClip.get(3));
-        float endXNdc = (float) (endClip.get(0) / endClip.get(3));
-        float endYNdc = (float) (endClip.get(1) / endClip.get(3));
-        int screenWidth = camera.getWIDTH();
-        int screenHeight = camera.getHEIGHT();
-        int startScreenX = (int) (screenWidth / 2 + startXNdc * screenHeight / 2);
-        int startScreenY = (int) (screenHeight / 2 - startYNdc * screenHeight / 2);
-        int endScreenX = (int) (screenWidth / 2 + endXNdc * screenHeight / 2);
-        int endScreenY = (int) (screenHeight / 2 - endYNdc * screenHeight / 2);
+        int startScreenX = (int) projectedX;
+        int startScreenY = (int) projectedY;
+
+        if (!projectPoint((float) end.get(0), (float) end.get(1), (float) end.get(2))) {
+            return;
+        }
+        int endScreenX = (int) projectedX;
+        int endScreenY = (int) projectedY;
+
         graphics.drawLine(startScreenX, startScreenY, endScreenX, endScreenY);
     }
 
-    private SimpleMatrix convertToHomogeneousCoordinates(SimpleMatrix point) {
-        SimpleMatrix homogeneous = new SimpleMatrix(4, 1);
-        homogeneous.set(0, 0, point.get(0));
-        homogeneous.set(1, 0, point.get(1));
-        homogeneous.set(2, 0, point.get(2));
-        homogeneous.set(3, 0, 1.0);
-        return homogeneous;
+    /**
+     * Cieniowanie zakresu widocznych trójkątów, dzielone na połowy aż do rozmiaru progu.
+     * Zakresy są rozłączne, więc wątki zapisują różne elementy {@code shadedColors}.
+     */
+    private class ShadeTask extends RecursiveAction {
+        private final float[] normals;
+        private final float[] centroids;
+        private final int baseColor;
+        private final Material material;
+        private final int from;
+        private final int to;
+
+        ShadeTask(float[] normals, float[] centroids, int baseColor, Material material, int from, int to) {
+            this.normals = normals;
+            this.centroids = centroids;
+            this.baseColor = baseColor;
+            this.material = material;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= PARALLEL_SHADING_THRESHOLD / 2) {
+                material.shadeBatch(normals, centroids, visibleTriangles, from, to,
+                        baseColor, lightBuffer, cameraX, cameraY, cameraZ, shadedColors);
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(new ShadeTask(normals, centroids, baseColor, material, from, middle),
+                    new ShadeTask(normals, centroids, baseColor, material, middle, to));
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,256 @@
+package src;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Hierarchia brył otaczających nad obiektami sceny. Liście zawierają do {@link #LEAF_SIZE}
+ * obiektów, a każdy węzeł prostopadłościan otaczający kule wszystkich obiektów poddrzewa.
+ * Węzły są zapisane w tablicach w kolejności przejścia w głąb (rodzic przed dziećmi), więc
+ * dopasowanie po ruchu obiektów ({@link #refit()}) to jeden przebieg od końca tablic bez zmiany
+ * struktury drzewa.
+ *
+ * <p>{@link #cull(Frustum)} odrzuca całe poddrzewa poza ostrosłupem widzenia, a dla poddrzew
+ * leżących w nim w całości pomija dalsze testy, więc koszt zależy od tego, co widać,
+ * a nie od rozmiaru sceny.
+ */
+@Getter
+public class SceneBVH {
+    public static final int LEAF_SIZE = 4;
+
+    private final SceneObject[] objects;
+    // Kule otaczające obiektów (x, y, z, r) i rewizje, z których zostały odczytane
+    private final float[] spheres;
+    private final long[] revisions;
+
+    private int nodeCount;
+    // Prostopadłościan węzła (minX, minY, minZ, maxX, maxY, maxZ), dzieci (-1 w liściu)
+    // i zakres obiektów liścia w order
+    private final float[] bounds;
+    private final int[] left;
+    private final int[] right;
+    private final int[] start;
+    private final int[] count;
+    private final int[] order;
+
+    private int[] stack = new int[64];
+    // Wynik ostatniego cull: indeksy widocznych obiektów
+    private final int[] visible;
+    private int visibleCount;
+    private int culledObjects;
+
+    public SceneBVH(List<? extends SceneObject> sceneObjects) {
+        int n = sceneObjects.size();
+        this.objects = sceneObjects.toArray(new SceneObject[0]);
+        this.spheres = new float[n * 4];
+        this.revisions = new long[n];
+        this.order = new int[n];
+        this.visible = new int[n];
+
+        for (int i = 0; i < n; i++) {
+            objects[i].getBoundingSphere(spheres, i * 4);
+            revisions[i] = objects[i].getRevision();
+            order[i] = i;
+        }
+
+        int maxNodes = Math.max(1, 2 * n - 1);
+        this.bounds = new float[maxNodes * 6];
+        this.left = new int[maxNodes];
+        this.right = new int[maxNodes];
+        this.start = new int[maxNodes];
+        this.count = new int[maxNodes];
+
+        if (n > 0) {
+            build(0, n);
+        }
+    }
+
+    /**
+     * Buduje poddrzewo nad order[from, to): podział w medianie środków kul wzdłuż osi,
+     * na której są najbardziej rozrzucone. Zwraca indeks węzła.
+     */
+    private int build(int from, int to) {
+        int node = nodeCount++;
+        start[node] = from;
+        count[node] = to - from;
+        left[node] = -1;
+        right[node] = -1;
+
+        if (to - from > LEAF_SIZE) {
+            float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY, minZ = Float.POSITIVE_INFINITY;
+            float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY, maxZ = Float.NEGATIVE_INFINITY;
+            for (int i = from; i < to; i++) {
+                int s = order[i] * 4;
+                minX = Math.min(minX, spheres[s]);
+                minY = Math.min(minY, spheres[s + 1]);
+                minZ = Math.min(minZ, spheres[s + 2]);
+                maxX = Math.max(maxX, spheres[s]);
+                maxY = Math.max(maxY, spheres[s + 1]);
+                maxZ = Math.max(maxZ, spheres[s + 2]);
+            }
+
+            float extentX = maxX - minX, extentY = maxY - minY, extentZ = maxZ - minZ;
+            int axis = extentX >= extentY && extentX >= extentZ ? 0 : (extentY >= extentZ ? 1 : 2);
+            int middle = (from + to) >>> 1;
+            select(from, to - 1, middle, axis);
+
+            left[node] = build(from, middle);
+            right[node] = build(middle, to);
+        }
+
+        updateBounds(node);
+        return node;
+    }
+
+    /**
+     * Częściowe sortowanie (quickselect): order[k] trafia na swoje miejsce względem współrzędnej
+     * {@code axis} środków kul, mniejsze przed nim, większe za nim.
+     */
+    private void select(int low, int high, int k, int axis) {
+        while (low < high) {
+            float pivot = spheres[order[(low + high) >>> 1] * 4 + axis];
+            int i = low;
+            int j = high;
+            while (i <= j) {
+                while (spheres[order[i] * 4 + axis] < pivot) {
+                    i++;
+                }
+                while (spheres[order[j] * 4 + axis] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    int swap = order[i];
+                    order[i] = order[j];
+                    order[j] = swap;
+                    i++;
+                    j--;
+                }
+            }
+            if (k <= j) {
+                high = j;
+            } else if (k >= i) {
+                low = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void updateBounds(int node) {
+        int b = node * 6;
+        if (left[node] >= 0) {
+            int l = left[node] * 6;
+            int r = right[node] * 6;
+            for (int axis = 0; axis < 3; axis++) {
+                bounds[b + axis] = Math.min(bounds[l + axis], bounds[r + axis]);
+                bounds[b + 3 + axis] = Math.max(bounds[l + 3 + axis], bounds[r + 3 + axis]);
+            }
+            return;
+        }
+
+        float minX = Float.POSITIVE_INFINITY, minY = Float.POSITIVE_INFINITY, minZ = Float.POSITIVE_INFINITY;
+        float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY, maxZ = Float.NEGATIVE_INFINITY;
+        for (int i = start[node]; i < start[node] + count[node]; i++) {
+            int s = order[i] * 4;
+            float radius = spheres[s + 3];
+            minX = Math.min(minX, spheres[s] - radius);
+            minY = Math.min(minY, spheres[s + 1] - radius);
+            minZ = Math.min(minZ, spheres[s + 2] - radius);
+            maxX = Math.max(maxX, spheres[s] + radius);
+            maxY = Math.max(maxY, spheres[s + 1] + radius);
+            maxZ = Math.max(maxZ, spheres[s + 2] + radius);
+        }
+        bounds[b] = minX;
+        bounds[b + 1] = minY;
+        bounds[b + 2] = minZ;
+        bounds[b + 3] = maxX;
+        bounds[b + 4] = maxY;
+        bounds[b + 5] = maxZ;
+    }
+
+    /**
+     * Odczytuje kule obiektów, których rewizja się zmieniła, i dopasowuje prostopadłościany
+     * węzłów od liści do korzenia. Struktura drzewa się nie zmienia, więc po dużych przesunięciach
+     * warto zbudować hierarchię od nowa. Zwraca false, gdy żaden obiekt się nie poruszył.
+     */
+    public boolean refit() {
+        boolean changed = false;
+        for (int i = 0; i < objects.length; i++) {
+            long revision = objects[i].getRevision();
+            if (revision != revisions[i]) {
+                objects[i].getBoundingSphere(spheres, i * 4);
+                revisions[i] = revision;
+                changed = true;
+            }
+        }
+
+        if (changed) {
+            // Dzieci mają większe indeksy niż rodzic
+            for (int node = nodeCount - 1; node >= 0; node--) {
+                updateBounds(node);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Wyznacza obiekty, których kule przecinają ostrosłup (wszystkie, gdy {@code frustum} jest null).
+     * Zwraca ich liczbę; same obiekty są dostępne przez {@link #getVisibleObject(int)}.
+     */
+    public int cull(Frustum frustum) {
+        visibleCount = 0;
+        if (nodeCount == 0) {
+            culledObjects = 0;
+            return 0;
+        }
+
+        // Węzły leżące w całości wewnątrz ostrosłupa są zapisywane na stosie jako ~indeks
+        int top = 0;
+        stack[top++] = frustum == null ? ~0 : 0;
+        while (top > 0) {
+            int entry = stack[--top];
+            boolean inside = entry < 0;
+            int node = inside ? ~entry : entry;
+
+            if (!inside) {
+                int b = node * 6;
+                if (!frustum.intersectsBox(bounds[b], bounds[b + 1], bounds[b + 2],
+                        bounds[b + 3], bounds[b + 4], bounds[b + 5])) {
+                    continue;
+                }
+                inside = frustum.containsBox(bounds[b], bounds[b + 1], bounds[b + 2],
+                        bounds[b + 3], bounds[b + 4], bounds[b + 5]);
+            }
+
+            if (left[node] < 0) {
+                for (int i = start[node]; i < start[node] + count[node]; i++) {
+                    int object = order[i];
+                    int s = object * 4;
+                    if (inside || frustum.intersectsSphere(spheres[s], spheres[s + 1], spheres[s + 2], spheres[s + 3])) {
+                        visible[visibleCount++] = object;
+                    }
+                }
+                continue;
+            }
+
+            if (top + 2 > stack.length) {
+                stack = Arrays.copyOf(stack, stack.length * 2);
+            }
+            stack[top++] = inside ? ~right[node] : right[node];
+            stack[top++] = inside ? ~left[node] : left[node];
+        }
+
+        culledObjects = objects.length - visibleCount;
+        return visibleCount;
+    }
+
+    public SceneObject getVisibleObject(int k) {
+        return objects[visible[k]];
+    }
+
+    public int getObjectCount() {
+        return objects.length;
+    }
+}
@@ -0,0 +1,18 @@
+package src;
+
+/**
+ * Obiekt sceny, który {@link SceneBVH} może odrzucić w całości przed jakąkolwiek pracą na ścianach.
+ */
+public interface SceneObject {
+    /**
+     * Zapisuje kulę otaczającą obiekt w przestrzeni świata jako (x, y, z, promień) pod {@code out[offset..offset+3]}.
+     */
+    void getBoundingSphere(float[] out, int offset);
+
+    /**
+     * Licznik zmian położenia; kula otaczająca jest odczytywana ponownie tylko po jego zmianie.
+     */
+    long getRevision();
+
+    void draw(Renderer renderer);
+}
@@ -1,94 +1,207 @@
 package src;
 
+import src.lighting.Material;
+
 import java.awt.Color;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import org.ejml.simple.SimpleMatrix;
 
-public class Sphere {
+/**
+ * Sfera jako obiekt sceny: teselacja pochodzi z {@link SphereTessellation} i jest współdzielona
+ * przez sfery o tym samym promieniu i liczbie pasów, a kolor i materiał są atrybutami obiektu
+ * ({@link Surface}). {@link Renderer} rysuje wspólną siatkę z przesunięciem do środka sfery, jak
+ * instancję, więc utworzenie sfery ani zmiana wyglądu nie wymagają żadnej pracy na geometrii.
+ * Siatka w przestrzeni świata i ściany ({@link #getMesh()}, {@link #getFaces()}) powstają dopiero,
+ * gdy są potrzebne, np. dla drzewa BSP.
+ *
+ * <p>Poziomy szczegółowości (LOD): poziom 0 ma podaną liczbę pasów, a każdy kolejny o połowę
+ * mniej, aż do {@link #MIN_LATITUDE_BANDS} x {@link #MIN_LONGITUDE_BANDS}. Siatki poziomów też
+ * pochodzą z pamięci podręcznej teselacji; poziom wybiera {@link Renderer} na podstawie
+ * rozmiaru sfery na ekranie.
+ */
+public class Sphere implements SceneObject {
+    public static final int MIN_LATITUDE_BANDS = 4;
+    public static final int MIN_LONGITUDE_BANDS = 6;
+
+    // Siatka w przestrzeni świata, tworzona przy pierwszym użyciu
+    private Mesh mesh;
+    private final int[] lodLatitudeBands;
+    private final int[] lodLongitudeBands;
+    // Wspólne siatki poziomów ze środkiem w początku układu
+    private final Mesh[] lodMeshes;
+    // Macierz modelu 3x4 zapisana wierszami: samo przesunięcie do środka
+    private final float[] transform;
+    private int lodLevel;
     private List<Face> faces;
-    private float radius;
-    private float centerX, centerY, centerZ;
-    private int latitudeBands, longitudeBands;
-    private Color color;
+    private final float radius;
+    private final float centerX, centerY, centerZ;
+    private final int latitudeBands, longitudeBands;
+    private final Surface surface;
 
     public Sphere(float centerX, float centerY, float centerZ, float radius,
                   int latitudeBands, int longitudeBands, Color color) {
+        this(centerX, centerY, centerZ, radius, latitudeBands, longitudeBands, new Surface(color));
+    }
+
+    public Sphere(float centerX, float centerY, float centerZ, float radius,
+                  int latitudeBands, int longitudeBands, Surface surface) {
         this.centerX = centerX;
         this.centerY = centerY;
         this.centerZ = centerZ;
         this.radius = radius;
         this.latitudeBands = latitudeBands;
         this.longitudeBands = longitudeBands;
-        this.faces = new ArrayList<>();
-        this.color = color;
+        this.surface = surface;
+
+        this.transform = new float[]{
+                1, 0, 0, centerX,
+                0, 1, 0, centerY,
+                0, 0, 1, centerZ
+        };
+
+        // Każdy poziom zmniejsza liczbę pasów o połowę; pętla kończy się, gdy nic już nie maleje
+        int[] latitudes = new int[32];
+        int[] longitudes = new int[32];
+        int levels = 0;
+        int lat = latitudeBands;
+        int lon = longitudeBands;
+        while (true) {
+            latitudes[levels] = lat;
+            longitudes[levels] = lon;
+            levels++;
+
+            int nextLat = Math.min(lat, Math.max(MIN_LATITUDE_BANDS, lat / 2));
+            int nextLon = Math.min(lon, Math.max(MIN_LONGITUDE_BANDS, lon / 2));
+            if (nextLat == lat && nextLon == lon) {
+                break;
+            }
+            lat = nextLat;
+            lon = nextLon;
+        }
 
-        generateSphere();
+        this.lodLatitudeBands = Arrays.copyOf(latitudes, levels);
+        this.lodLongitudeBands = Arrays.copyOf(longitudes, levels);
+        this.lodMeshes = new Mesh[levels];
     }
 
-    private void generateSphere() {
-        SimpleMatrix[][] vertices = new SimpleMatrix[latitudeBands + 1][longitudeBands + 1];
-
-        for (int lat = 0; lat <= latitudeBands; lat++) {
-            float theta = (float) (lat * Math.PI / latitudeBands);
-            float sinTheta = (float) Math.sin(theta);
-            float cosTheta = (float) Math.cos(theta);
+    /**
+     * Siatka poziomu 0 przesunięta do środka sfery (kopia pozycji), tworzona przy pierwszym wywołaniu.
+     */
+    public Mesh getMesh() {
+        if (mesh == null) {
+            mesh = getLodMesh(0).translated(centerX, centerY, centerZ);
+        }
+        return mesh;
+    }
 
-            for (int lon = 0; lon <= longitudeBands; lon++) {
-                float phi = (float) (lon * 2 * Math.PI / longitudeBands);
-                float sinPhi = (float) Math.sin(phi);
-                float cosPhi = (float) Math.cos(phi);
+    public int getLodCount() {
+        return lodMeshes.length;
+    }
 
-                float x = cosPhi * sinTheta;
-                float y = cosTheta;
-                float z = sinPhi * sinTheta;
+    public int getLodLatitudeBands(int level) {
+        return lodLatitudeBands[level];
+    }
 
-                float scaledX = centerX + radius * x;
-                float scaledY = centerY + radius * y;
-                float scaledZ = centerZ + radius * z;
+    public int getLodLongitudeBands(int level) {
+        return lodLongitudeBands[level];
+    }
 
-                vertices[lat][lon] = new SimpleMatrix(3, 1, true, new float[]{scaledX, scaledY, scaledZ});
-            }
+    /**
+     * Wspólna siatka poziomu {@code level} w przestrzeni obiektu (środek w początku układu);
+     * do świata przenosi ją {@link #getTransform()}.
+     */
+    public Mesh getLodMesh(int level) {
+        Mesh lodMesh = lodMeshes[level];
+        if (lodMesh == null) {
+            lodMesh = SphereTessellation.get(radius, lodLatitudeBands[level], lodLongitudeBands[level]);
+            lodMeshes[level] = lodMesh;
         }
+        return lodMesh;
+    }
 
-        for (int lat = 0; lat < latitudeBands; lat++) {
-            for (int lon = 0; lon < longitudeBands; lon++) {
-                SimpleMatrix v1 = vertices[lat][lon];
-                SimpleMatrix v2 = vertices[lat + 1][lon];
-                SimpleMatrix v3 = vertices[lat + 1][lon + 1];
-                SimpleMatrix v4 = vertices[lat][lon + 1];
+    /**
+     * Macierz modelu 3x4 zapisana wierszami (przesunięcie do środka sfery); nie należy jej zmieniać.
+     */
+    public float[] getTransform() {
+        return transform;
+    }
 
-                createTriangleFace(v1, v2, v3);
-                createTriangleFace(v1, v3, v4);
-            }
-        }
+    /**
+     * Poziom wybrany w poprzedniej klatce, punkt wyjścia dla histerezy {@link LodSelector}.
+     */
+    public int getLodLevel() {
+        return lodLevel;
+    }
+
+    public void setLodLevel(int lodLevel) {
+        this.lodLevel = lodLevel;
+    }
+
+    @Override
+    public void getBoundingSphere(float[] out, int offset) {
+        out[offset] = centerX;
+        out[offset + 1] = centerY;
+        out[offset + 2] = centerZ;
+        out[offset + 3] = radius;
+    }
+
+    /**
+     * Sfera się nie przesuwa.
+     */
+    @Override
+    public long getRevision() {
+        return 0;
+    }
+
+    @Override
+    public void draw(Renderer renderer) {
+        renderer.drawSphere(this);
+    }
+
+    public Surface getSurface() {
+        return surface;
     }
 
-    private void createTriangleFace(SimpleMatrix v1, SimpleMatrix v2, SimpleMatrix v3) {
-        float[] vertices = new float[12]; // 12 = 3 wierzchołki * 3 współrzędne + 3 dla powtórzonego wierzchołka
+    public Color getColor() {
+        return surface.getColor();
+    }
 
-        vertices[0] = (float) v1.get(0);
-        vertices[1] = (float) v1.get(1);
-        vertices[2] = (float) v1.get(2);
+    public void setAppearance(Color color, Material material) {
+        surface.setColor(color);
+        surface.setMaterial(material);
+    }
 
-        vertices[3] = (float) v2.get(0);
-        vertices[4] = (float) v2.get(1);
-        vertices[5] = (float) v2.get(2);
+    public float getRadius() {
+        return radius;
+    }
 
-        vertices[6] = (float) v3.get(0);
-        vertices[7] = (float) v3.get(1);
-        vertices[8] = (float) v3.get(2);
+    public float getCenterX() {
+        return centerX;
+    }
 
-        vertices[9] = (float) v1.get(0);
-        vertices[10] = (float) v1.get(1);
-        vertices[11] = (float) v1.get(2);
+    public float getCenterY() {
+        return centerY;
+    }
 
-        Color faceColor = color;
+    public float getCenterZ() {
+        return centerZ;
+    }
+
+    public int getLatitudeBands() {
+        return latitudeBands;
+    }
 
-        faces.add(new Face(vertices, faceColor));
+    public int getLongitudeBands() {
+        return longitudeBands;
     }
 
+    /**
+     * Ściany dla BSP i wireframe, tworzone raz; dzielą {@link Surface} ze sferą.
+     */
     public List<Face> getFaces() {
+        if (faces == null) {
+            faces = getMesh().toFaces(surface);
+        }
         return faces;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,127 @@
+package src;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Pamięć podręczna siatek sfer o środku w początku układu, kluczowana przez
+ * (promień, pasy szerokości, pasy długości). Siatki są niezmienne, więc wszystkie sfery
+ * o tej samej teselacji współdzielą jedną; funkcje trygonometryczne liczone są raz na klucz.
+ */
+public final class SphereTessellation {
+    private static final Map<Key, Mesh> CACHE = new ConcurrentHashMap<>();
+
+    private SphereTessellation() {
+    }
+
+    public static Mesh get(float radius, int latitudeBands, int longitudeBands) {
+        if (latitudeBands < 2 || longitudeBands < 3) {
+            throw new IllegalArgumentException("A sphere needs at least 2 latitude and 3 longitude bands");
+        }
+        return CACHE.computeIfAbsent(new Key(radius, latitudeBands, longitudeBands),
+                key -> generate(radius, latitudeBands, longitudeBands));
+    }
+
+    public static int size() {
+        return CACHE.size();
+    }
+
+    public static void clear() {
+        CACHE.clear();
+    }
+
+    /**
+     * Bieguny są zapisane jako pojedyncze wierzchołki, a każdy pierścień szerokości
+     * ma {@code longitudeBands} wierzchołków (szew przy lon = 0 jest domknięty indeksami).
+     * Trójkąty są zorientowane przeciwnie do ruchu wskazówek zegara patrząc z zewnątrz,
+     * więc normalna (v2 - v1) x (v3 - v1) wskazuje na zewnątrz sfery.
+     */
+    private static Mesh generate(float radius, int latitudeBands, int longitudeBands) {
+        int ringCount = latitudeBands - 1;
+        int vertexCount = 2 + ringCount * longitudeBands;
+        float[] positions = new float[vertexCount * 3];
+
+        for (int lat = 0; lat <= latitudeBands; lat++) {
+            float theta = (float) (lat * Math.PI / latitudeBands);
+            float sinTheta = (float) Math.sin(theta);
+            float cosTheta = (float) Math.cos(theta);
+
+            int lonCount = (lat == 0 || lat == latitudeBands) ? 1 : longitudeBands;
+            for (int lon = 0; lon < lonCount; lon++) {
+                float phi = (float) (lon * 2 * Math.PI / longitudeBands);
+                float sinPhi = (float) Math.sin(phi);
+                float cosPhi = (float) Math.cos(phi);
+
+                int vertex = vertexIndex(lat, lon, latitudeBands, longitudeBands) * 3;
+                positions[vertex] = radius * (cosPhi * sinTheta);
+                positions[vertex + 1] = radius * cosTheta;
+                positions[vertex + 2] = radius * (sinPhi * sinTheta);
+            }
+        }
+
+        // Trójkąty zdegenerowane przy biegunach są pomijane
+        int triangleCount = 2 * longitudeBands * (latitudeBands - 1);
+        int[] indices = new int[triangleCount * 3];
+        int i = 0;
+
+        for (int lat = 0; lat < latitudeBands; lat++) {
+            for (int lon = 0; lon < longitudeBands; lon++) {
+                int v1 = vertexIndex(lat, lon, latitudeBands, longitudeBands);
+                int v2 = vertexIndex(lat + 1, lon, latitudeBands, longitudeBands);
+                int v3 = vertexIndex(lat + 1, lon + 1, latitudeBands, longitudeBands);
+                int v4 = vertexIndex(lat, lon + 1, latitudeBands, longitudeBands);
+
+                if (lat != latitudeBands - 1) {
+                    indices[i++] = v1;
+                    indices[i++] = v3;
+                    indices[i++] = v2;
+                }
+                if (lat != 0) {
+                    indices[i++] = v1;
+                    indices[i++] = v4;
+                    indices[i++] = v3;
+                }
+            }
+        }
+
+        return new Mesh(positions, indices);
+    }
+
+    private static int vertexIndex(int lat, int lon, int latitudeBands, int longitudeBands) {
+        if (lat == 0) {
+            return 0;
+        }
+        if (lat == latitudeBands) {
+            return 1 + (latitudeBands - 1) * longitudeBands;
+        }
+        return 1 + (lat - 1) * longitudeBands + (lon % longitudeBands);
+    }
+
+    private static final class Key {
+        private final int radiusBits;
+        private final int latitudeBands;
+        private final int longitudeBands;
+
+        Key(float radius, int latitudeBands, int longitudeBands) {
+            this.radiusBits = Float.floatToIntBits(radius);
+            this.latitudeBands = latitudeBands;
+            this.longitudeBands = longitudeBands;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) o;
+            return radiusBits == other.radiusBits
+                    && latitudeBands == other.latitudeBands
+                    && longitudeBands == other.longitudeBands;
+        }
+
+        @Override
+        public int hashCode() {
+            return (radiusBits * 31 + latitudeBands) * 31 + longitudeBands;
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package src;
+
+import src.lighting.Material;
+
+import java.awt.Color;
+
+/**
+ * Wygląd obiektu: kolor bazowy i materiał, wspólne dla wszystkich jego ścian
+ * (także tych powstałych z podziału w drzewie BSP). Zmiana wyglądu nie dotyka geometrii.
+ * Porównywany przez tożsamość, bo jest zmienny.
+ */
+public class Surface {
+    private Color color;
+    // null oznacza materiał domyślny renderera
+    private Material material;
+
+    public Surface(Color color) {
+        this(color, null);
+    }
+
+    public Surface(Color color, Material material) {
+        this.color = color;
+        this.material = material;
+    }
+
+    public Color getColor() {
+        return color;
+    }
+
+    public void setColor(Color color) {
+        this.color = color;
+    }
+
+    public Material getMaterial() {
+        return material;
+    }
+
+    public void setMaterial(Material material) {
+        this.material = material;
+    }
+}
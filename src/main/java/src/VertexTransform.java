@@ -0,0 +1,61 @@
+package src;
+
+import lombok.Getter;
+
+/**
+ * Wierzchołki siatki przetransformowane do współrzędnych ekranu dla jednej klatki.
+ * Każdy unikalny wierzchołek jest rzutowany dokładnie raz, a wszystkie trójkąty,
+ * które go współdzielą, odczytują gotowy wynik.
+ */
+@Getter
+public class VertexTransform {
+    private float[] screenX = new float[0];
+    private float[] screenY = new float[0];
+    private float[] clipW = new float[0];
+    private long frame = -1;
+
+    /**
+     * @param viewProjection macierz projekcja * widok zapisana wierszami (16 elementów)
+     */
+    public void project(float[] positions, int vertexCount, float[] viewProjection,
+                        int screenWidth, int screenHeight, long frame) {
+        ensureCapacity(vertexCount);
+
+        float m00 = viewProjection[0], m01 = viewProjection[1], m02 = viewProjection[2], m03 = viewProjection[3];
+        float m10 = viewProjection[4], m11 = viewProjection[5], m12 = viewProjection[6], m13 = viewProjection[7];
+        float m30 = viewProjection[12], m31 = viewProjection[13], m32 = viewProjection[14], m33 = viewProjection[15];
+
+        for (int v = 0; v < vertexCount; v++) {
+            float x = positions[v * 3];
+            float y = positions[v * 3 + 1];
+            float z = positions[v * 3 + 2];
+
+            float w = m30 * x + m31 * y + m32 * z + m33;
+            clipW[v] = w;
+
+            if (w <= 0) {
+                continue;
+            }
+
+            float xNdc = (m00 * x + m01 * y + m02 * z + m03) / w;
+            float yNdc = (m10 * x + m11 * y + m12 * z + m13) / w;
+
+            screenX[v] = screenWidth / 2 + xNdc * screenHeight / 2;
+            screenY[v] = screenHeight / 2 - yNdc * screenHeight / 2;
+        }
+
+        this.frame = frame;
+    }
+
+    public boolean isVisible(int vertex) {
+        return clipW[vertex] > 0;
+    }
+
+    private void ensureCapacity(int vertexCount) {
+        if (clipW.length < vertexCount) {
+            screenX = new float[vertexCount];
+            screenY = new float[vertexCount];
+            clipW = new float[vertexCount];
+        }
+    }
+}
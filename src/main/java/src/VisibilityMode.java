@@ -0,0 +1,13 @@
+package src;
+
+/**
+ * Sposób usuwania powierzchni niewidocznych w {@link Renderer}.
+ */
+public enum VisibilityMode {
+    // Ściany rysowane w kolejności przekazania (algorytm malarza bez sortowania)
+    SUBMISSION_ORDER,
+    // Kolejność od tyłu do przodu wyznaczana przez drzewo BSP
+    BSP,
+    // Programowy bufor głębokości, niezależny od kolejności ścian
+    Z_BUFFER
+}
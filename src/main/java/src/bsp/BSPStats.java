@@ -0,0 +1,25 @@
+package src.bsp;
+
+import lombok.Data;
+
+/**
+ * Statystyki budowy drzewa BSP.
+ */
+@Data
+public class BSPStats {
+    private int inputFaceCount;
+    private int nodeCount;
+    private int maxDepth;
+    private int splitCount;
+    private long buildTimeNanos;
+
+    public double getBuildTimeMillis() {
+        return buildTimeNanos / 1_000_000.0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("nodes=%d depth=%d splits=%d build=%.2fms",
+                nodeCount, maxDepth, splitCount, getBuildTimeMillis());
+    }
+}
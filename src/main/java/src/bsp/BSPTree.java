@@ -3,42 +3,161 @@ package src.bsp;
 import lombok.Data;
 import org.ejml.simple.SimpleMatrix;
 import src.Face;
+import src.Mesh;
 import src.Renderer;
 
+import java.awt.Color;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Data
 public class BSPTree {
+    // Poniżej tej liczby ścian poddrzewa są budowane na bieżącym wątku
+    private static final int PARALLEL_SUBTREE_THRESHOLD = 256;
+    // Poniżej tej liczby ścian klasyfikacja względem płaszczyzny nie jest dzielona
+    private static final int PARALLEL_CLASSIFY_THRESHOLD = 2048;
+    private static final int CLASSIFY_CHUNK = 512;
+
     private BSPNode root;
+    private final SplitterHeuristic heuristic;
+    private final boolean parallel;
+    private final BSPStats stats = new BSPStats();
+
+    private final AtomicInteger nodeCount = new AtomicInteger();
+    private final AtomicInteger maxDepth = new AtomicInteger();
+    private final AtomicInteger splitCount = new AtomicInteger();
 
     public BSPTree(List<Face> faces) {
+        this(faces, SplitterHeuristic.BALANCED);
+    }
+
+    public BSPTree(List<Face> faces, SplitterHeuristic heuristic) {
+        this(faces, heuristic, false);
+    }
+
+    /**
+     * @param parallel czy budować poddrzewa i klasyfikować ściany równolegle w puli ForkJoin;
+     *                 wynikowe drzewo jest identyczne jak przy budowie sekwencyjnej
+     */
+    public BSPTree(List<Face> faces, SplitterHeuristic heuristic, boolean parallel) {
+        this.heuristic = heuristic;
+        this.parallel = parallel;
+
         if (faces == null || faces.isEmpty()) {
             root = null;
             return;
         }
 
-        root = buildTree(new ArrayList<>(faces));
+        long start = System.nanoTime();
+        List<Face> input = new ArrayList<>(faces);
+
+        if (parallel) {
+            root = ForkJoinPool.commonPool().invoke(new SubtreeTask(input, 1));
+        } else {
+            root = buildTree(input, 1);
+        }
+
+        stats.setInputFaceCount(faces.size());
+        stats.setNodeCount(nodeCount.get());
+        stats.setMaxDepth(maxDepth.get());
+        stats.setSplitCount(splitCount.get());
+        stats.setBuildTimeNanos(System.nanoTime() - start);
+    }
+
+    public BSPTree(Mesh mesh, Color color) {
+        this(mesh.toFaces(color));
     }
 
-    private BSPNode buildTree(List<Face> faces) {
+    public BSPTree(Mesh mesh, Color color, SplitterHeuristic heuristic) {
+        this(mesh.toFaces(color), heuristic);
+    }
+
+    private BSPNode buildTree(List<Face> faces, int depth) {
         if (faces.isEmpty()) {
             return null;
         }
 
-        Face partitioner = faces.get(0);
-        faces.remove(0);
+        int partitionIndex = heuristic.selectPartition(faces);
+        Face partitioner = faces.get(partitionIndex);
+        faces.remove(partitionIndex);
 
         BSPNode node = new BSPNode(partitioner);
+        nodeCount.incrementAndGet();
+        updateMaxDepth(depth);
         Plane plane = node.getPlane();
 
         List<Face> frontList = new ArrayList<>();
         List<Face> backList = new ArrayList<>();
 
-        for (Face face : faces) {
-            int classification = plane.classifyFace(face);
+        if (parallel && faces.size() >= PARALLEL_CLASSIFY_THRESHOLD) {
+            classifyParallel(plane, faces, node, frontList, backList);
+        } else {
+            for (Face face : faces) {
+                int classification = plane.classifyFace(face);
+
+                switch (classification) {
+                    case 0:
+                        node.getCoplanarFaces().add(face);
+                        break;
+                    case 1:
+                        frontList.add(face);
+                        break;
+                    case -1:
+                        backList.add(face);
+                        break;
+                    case 2:
+                        plane.splitFace(face, frontList, backList);
+                        splitCount.incrementAndGet();
+                        break;
+                }
+            }
+        }
+
+        boolean forkFront = parallel && !frontList.isEmpty() && !backList.isEmpty()
+                && frontList.size() + backList.size() >= PARALLEL_SUBTREE_THRESHOLD;
+
+        if (forkFront) {
+            SubtreeTask frontTask = new SubtreeTask(frontList, depth + 1);
+            frontTask.fork();
+            node.setBack(buildTree(backList, depth + 1));
+            node.setFront(frontTask.join());
+            return node;
+        }
+
+        if (!frontList.isEmpty()) {
+            node.setFront(buildTree(frontList, depth + 1));
+        }
+
+        if (!backList.isEmpty()) {
+            node.setBack(buildTree(backList, depth + 1));
+        }
+
+        return node;
+    }
+
+    /**
+     * Klasyfikuje (i w razie potrzeby dzieli) ściany równolegle w kawałkach, a następnie
+     * rozdziela je do list sekwencyjnie, zachowując kolejność z budowy jednowątkowej.
+     */
+    private void classifyParallel(Plane plane, List<Face> faces, BSPNode node,
+                                  List<Face> frontList, List<Face> backList) {
+        int count = faces.size();
+        int[] classifications = new int[count];
+        Face[][] splitFront = new Face[count][];
+        Face[][] splitBack = new Face[count][];
 
-            switch (classification) {
+        ForkJoinTask.invokeAll(new ClassifyTask(plane, faces, classifications, splitFront, splitBack, 0, count));
+
+        for (int i = 0; i < count; i++) {
+            Face face = faces.get(i);
+
+            switch (classifications[i]) {
                 case 0:
                     node.getCoplanarFaces().add(face);
                     break;
@@ -49,22 +168,77 @@ public class BSPTree {
                     backList.add(face);
                     break;
                 case 2:
-                    Face[] splitFaces = plane.splitFace(face);
-                    frontList.add(splitFaces[0]);
-                    backList.add(splitFaces[1]);
+                    Collections.addAll(frontList, splitFront[i]);
+                    Collections.addAll(backList, splitBack[i]);
+                    splitCount.incrementAndGet();
                     break;
             }
         }
+    }
 
-        if (!frontList.isEmpty()) {
-            node.setFront(buildTree(frontList));
+    private void updateMaxDepth(int depth) {
+        int current = maxDepth.get();
+        while (depth > current && !maxDepth.compareAndSet(current, depth)) {
+            current = maxDepth.get();
         }
+    }
 
-        if (!backList.isEmpty()) {
-            node.setBack(buildTree(backList));
+    private class SubtreeTask extends RecursiveTask<BSPNode> {
+        private final List<Face> faces;
+        private final int depth;
+
+        SubtreeTask(List<Face> faces, int depth) {
+            this.faces = faces;
+            this.depth = depth;
         }
 
-        return node;
+        @Override
+        protected BSPNode compute() {
+            return buildTree(faces, depth);
+        }
+    }
+
+    private static class ClassifyTask extends RecursiveAction {
+        private final Plane plane;
+        private final List<Face> faces;
+        private final int[] classifications;
+        private final Face[][] splitFront;
+        private final Face[][] splitBack;
+        private final int from;
+        private final int to;
+
+        ClassifyTask(Plane plane, List<Face> faces, int[] classifications,
+                     Face[][] splitFront, Face[][] splitBack, int from, int to) {
+            this.plane = plane;
+            this.faces = faces;
+            this.classifications = classifications;
+            this.splitFront = splitFront;
+            this.splitBack = splitBack;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > CLASSIFY_CHUNK) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new ClassifyTask(plane, faces, classifications, splitFront, splitBack, from, middle),
+                        new ClassifyTask(plane, faces, classifications, splitFront, splitBack, middle, to));
+                return;
+            }
+
+            for (int i = from; i < to; i++) {
+                Face face = faces.get(i);
+                classifications[i] = plane.classifyFace(face);
+                if (classifications[i] == 2) {
+                    List<Face> front = new ArrayList<>(2);
+                    List<Face> back = new ArrayList<>(2);
+                    plane.splitFace(face, front, back);
+                    splitFront[i] = front.toArray(new Face[0]);
+                    splitBack[i] = back.toArray(new Face[0]);
+                }
+            }
+        }
     }
 
     public void render(Renderer renderer, SimpleMatrix cameraPosition) {
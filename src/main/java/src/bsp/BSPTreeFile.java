@@ -0,0 +1,281 @@
+package src.bsp;
+
+import org.ejml.simple.SimpleMatrix;
+import src.Edge;
+import src.Face;
+import src.Surface;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Binarny zapis zbudowanego drzewa BSP, wczytywany bez deserializacji: plik jest odwzorowywany
+ * w pamięci ({@link FileChannel#map}), a {@link FlatBSPTree} czyta węzły wprost z widoków
+ * na kolejne sekcje.
+ *
+ * <p>Format (little-endian, wszystkie elementy po 4 bajty):
+ * <pre>
+ * nagłówek     magic, wersja, węzły, ściany, powierzchnie, podziały, głębokość, ściany wejściowe, klucz sceny (long)
+ * planes       węzły * 4 float    (a, b, c, d)
+ * front, back  węzły int          (-1 gdy brak dziecka)
+ * faceStart, faceCount, subtreeFaceCount   węzły int
+ * bounds       węzły * 6 float
+ * facePlanes   ściany * 4 float
+ * vertices     ściany * 12 float  (4 wierzchołki ściany po podziałach)
+ * surfaces     ściany int         (indeks w palecie powierzchni)
+ * </pre>
+ * Kolory i materiały nie są zapisywane: ściany wskazują powierzchnie przez indeks w palecie
+ * ({@link #surfacesOf(List)}), podawanej przy wczytywaniu, więc zmiana wyglądu obiektu
+ * nie unieważnia pliku. Klucz sceny ({@link #sceneKey}) odrzuca plik zbudowany z innej geometrii.
+ */
+public final class BSPTreeFile {
+    private static final int MAGIC = 0x54505342; // "BSPT"
+    private static final int VERSION = 1;
+    private static final int HEADER_BYTES = 8 * 4 + 8;
+
+    private BSPTreeFile() {
+    }
+
+    /**
+     * Różne powierzchnie ścian w kolejności pierwszego wystąpienia.
+     */
+    public static Surface[] surfacesOf(List<Face> faces) {
+        Map<Surface, Integer> indices = new IdentityHashMap<>();
+        List<Surface> surfaces = new ArrayList<>();
+        for (Face face : faces) {
+            if (indices.putIfAbsent(face.getSurface(), surfaces.size()) == null) {
+                surfaces.add(face.getSurface());
+            }
+        }
+        return surfaces.toArray(new Surface[0]);
+    }
+
+    /**
+     * Skrót FNV-1a wierzchołków ścian wejściowych, indeksów ich powierzchni i parametrów heurystyki.
+     */
+    public static long sceneKey(List<Face> faces, Surface[] surfaces, SplitterHeuristic heuristic) {
+        Map<Surface, Integer> indices = indexOf(surfaces);
+        long hash = 0xcbf29ce484222325L;
+        hash = mix(hash, faces.size());
+        for (Face face : faces) {
+            for (Edge edge : face.getEdges()) {
+                SimpleMatrix vertex = edge.getStart();
+                hash = mix(hash, Float.floatToIntBits((float) vertex.get(0)));
+                hash = mix(hash, Float.floatToIntBits((float) vertex.get(1)));
+                hash = mix(hash, Float.floatToIntBits((float) vertex.get(2)));
+            }
+            hash = mix(hash, indices.get(face.getSurface()));
+        }
+        hash = mix(hash, heuristic.getCandidateSamples());
+        hash = mix(hash, heuristic.getEvaluationSamples());
+        hash = mix(hash, Float.floatToIntBits(heuristic.getSplitWeight()));
+        hash = mix(hash, Float.floatToIntBits(heuristic.getBalanceWeight()));
+        return hash;
+    }
+
+    private static long mix(long hash, int value) {
+        for (int shift = 0; shift < 32; shift += 8) {
+            hash ^= (value >>> shift) & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    private static Map<Surface, Integer> indexOf(Surface[] surfaces) {
+        Map<Surface, Integer> indices = new IdentityHashMap<>();
+        for (int i = 0; i < surfaces.length; i++) {
+            indices.put(surfaces[i], i);
+        }
+        return indices;
+    }
+
+    /**
+     * Zapisuje drzewo. Plik powstaje pod nazwą tymczasową i jest przenoszony na miejsce w całości,
+     * więc równoległy odczyt nigdy nie widzi niepełnego pliku.
+     *
+     * @param surfaces paleta, w której muszą być powierzchnie wszystkich ścian drzewa
+     */
+    public static void write(Path file, FlatBSPTree tree, BSPStats stats, Surface[] surfaces, long sceneKey)
+            throws IOException {
+        int nodes = tree.getNodeCount();
+        int faceTotal = tree.getTotalFaceCount();
+        Map<Surface, Integer> indices = indexOf(surfaces);
+
+        long size = fileSize(nodes, faceTotal);
+        if (size > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("BSP tree is too large to write: " + size + " bytes");
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate((int) size).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(nodes).putInt(faceTotal).putInt(surfaces.length)
+                .putInt(stats.getSplitCount()).putInt(stats.getMaxDepth()).putInt(stats.getInputFaceCount())
+                .putLong(sceneKey);
+
+        putFloats(buffer, tree.getPlanes());
+        putInts(buffer, tree.getFront());
+        putInts(buffer, tree.getBack());
+        putInts(buffer, tree.getFaceStart());
+        putInts(buffer, tree.getFaceCount());
+        putInts(buffer, tree.getSubtreeFaceCount());
+        putFloats(buffer, tree.getBounds());
+        putFloats(buffer, tree.getFacePlanes());
+
+        for (int i = 0; i < faceTotal; i++) {
+            for (Edge edge : tree.getFace(i).getEdges()) {
+                SimpleMatrix vertex = edge.getStart();
+                buffer.putFloat((float) vertex.get(0))
+                        .putFloat((float) vertex.get(1))
+                        .putFloat((float) vertex.get(2));
+            }
+        }
+        for (int i = 0; i < faceTotal; i++) {
+            Integer index = indices.get(tree.getFace(i).getSurface());
+            if (index == null) {
+                throw new IllegalArgumentException("Face surface is missing from the palette");
+            }
+            buffer.putInt(index);
+        }
+        // Przez Buffer: w JDK 9+ ByteBuffer ma własne przeciążenia, których nie ma w Javie 8
+        ((Buffer) buffer).flip();
+
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Odwzorowuje plik w pamięci i zwraca drzewo czytające z niego węzły albo null, gdy pliku nie ma,
+     * jest uszkodzony lub należy do innej sceny, palety albo wersji formatu.
+     *
+     * @param stats wypełniane danymi z nagłówka, gdy nie jest null
+     */
+    public static FlatBSPTree load(Path file, Surface[] surfaces, long sceneKey, BSPStats stats) throws IOException {
+        if (!Files.isRegularFile(file)) {
+            return null;
+        }
+
+        MappedByteBuffer mapped;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_BYTES) {
+                return null;
+            }
+            mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        mapped.order(ByteOrder.LITTLE_ENDIAN);
+
+        int magic = mapped.getInt();
+        int version = mapped.getInt();
+        int nodes = mapped.getInt();
+        int faceTotal = mapped.getInt();
+        int surfaceCount = mapped.getInt();
+        int splitCount = mapped.getInt();
+        int maxDepth = mapped.getInt();
+        int inputFaceCount = mapped.getInt();
+        long key = mapped.getLong();
+        if (magic != MAGIC || version != VERSION || key != sceneKey || surfaceCount != surfaces.length
+                || nodes < 0 || faceTotal < 0 || mapped.capacity() != fileSize(nodes, faceTotal)) {
+            return null;
+        }
+
+        FloatBuffer planes = floats(mapped, nodes * 4);
+        IntBuffer front = ints(mapped, nodes);
+        IntBuffer back = ints(mapped, nodes);
+        IntBuffer faceStart = ints(mapped, nodes);
+        IntBuffer faceCount = ints(mapped, nodes);
+        IntBuffer subtreeFaceCount = ints(mapped, nodes);
+        FloatBuffer bounds = floats(mapped, nodes * 6);
+        FloatBuffer facePlanes = floats(mapped, faceTotal * 4);
+        FloatBuffer vertices = floats(mapped, faceTotal * 12);
+        IntBuffer faceSurfaces = ints(mapped, faceTotal);
+        if (!isValid(nodes, faceTotal, surfaces.length, front, back, faceStart, faceCount, faceSurfaces)) {
+            return null;
+        }
+
+        if (stats != null) {
+            stats.setInputFaceCount(inputFaceCount);
+            stats.setNodeCount(nodes);
+            stats.setMaxDepth(maxDepth);
+            stats.setSplitCount(splitCount);
+        }
+        return new FlatBSPTree(nodes, planes, front, back, faceStart, faceCount, bounds, subtreeFaceCount,
+                facePlanes, vertices, faceSurfaces, surfaces);
+    }
+
+    /**
+     * Sprawdza indeksy, których przejście drzewa używa bez kontroli zakresu. Dziecko musi mieć
+     * większy indeks niż rodzic (tak zapisuje {@link FlatBSPTree}), co wyklucza też cykle.
+     */
+    private static boolean isValid(int nodes, int faceTotal, int surfaceCount, IntBuffer front, IntBuffer back,
+                                   IntBuffer faceStart, IntBuffer faceCount, IntBuffer faceSurfaces) {
+        for (int node = 0; node < nodes; node++) {
+            int frontChild = front.get(node);
+            int backChild = back.get(node);
+            if ((frontChild != -1 && (frontChild <= node || frontChild >= nodes))
+                    || (backChild != -1 && (backChild <= node || backChild >= nodes))) {
+                return false;
+            }
+
+            int start = faceStart.get(node);
+            int count = faceCount.get(node);
+            if (start < 0 || count < 0 || (long) start + count > faceTotal) {
+                return false;
+            }
+        }
+        for (int i = 0; i < faceTotal; i++) {
+            int surface = faceSurfaces.get(i);
+            if (surface < 0 || surface >= surfaceCount) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long fileSize(int nodes, int faces) {
+        return HEADER_BYTES + 4L * ((long) nodes * (4 + 5 + 6) + (long) faces * (4 + 12 + 1));
+    }
+
+    private static FloatBuffer floats(ByteBuffer source, int count) {
+        ByteBuffer section = source.slice().order(ByteOrder.LITTLE_ENDIAN);
+        ((Buffer) section).limit(count * 4);
+        ((Buffer) source).position(source.position() + count * 4);
+        return section.asFloatBuffer();
+    }
+
+    private static IntBuffer ints(ByteBuffer source, int count) {
+        ByteBuffer section = source.slice().order(ByteOrder.LITTLE_ENDIAN);
+        ((Buffer) section).limit(count * 4);
+        ((Buffer) source).position(source.position() + count * 4);
+        return section.asIntBuffer();
+    }
+
+    private static void putFloats(ByteBuffer target, FloatBuffer values) {
+        for (int i = 0; i < values.limit(); i++) {
+            target.putFloat(values.get(i));
+        }
+    }
+
+    private static void putInts(ByteBuffer target, IntBuffer values) {
+        for (int i = 0; i < values.limit(); i++) {
+            target.putInt(values.get(i));
+        }
+    }
+}
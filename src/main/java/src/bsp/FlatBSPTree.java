@@ -0,0 +1,457 @@
+package src.bsp;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import org.ejml.simple.SimpleMatrix;
+import src.Edge;
+import src.Face;
+import src.Frustum;
+import src.Renderer;
+import src.SceneObject;
+import src.Surface;
+
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+/**
+ * Skompilowana, tylko do odczytu postać {@link BSPTree}. Węzły są zapisane w buforach
+ * prymitywnych: współczynniki płaszczyzn (a, b, c, d) w {@code planes}, indeksy dzieci
+ * w {@code front}/{@code back} (-1 gdy brak) oraz zakresy ścian w {@code faces}.
+ * Każdy węzeł ma prostopadłościan otaczający całe poddrzewo ({@code bounds}), a każda ściana
+ * własną płaszczyznę ({@code facePlanes}), co pozwala odrzucać poddrzewa poza ostrosłupem
+ * widzenia i ściany odwrócone od kamery przed jakąkolwiek transformacją czy oświetleniem.
+ * Przejście korzysta z jawnego stosu zamiast rekurencji, więc głębokie drzewa
+ * nie przepełniają stosu wywołań.
+ *
+ * <p>Drzewo zbudowane w pamięci trzyma bufory na tablicach; drzewo wczytane przez {@link BSPTreeFile}
+ * czyta węzły wprost z pliku odwzorowanego w pamięci. Ściany takiego drzewa powstają dopiero
+ * przy pierwszym narysowaniu, z zapisanych wierzchołków.
+ *
+ * <p>Obiekty ruchome nie zmieniają drzewa: co klatkę są wstawiane ({@link #insertDynamicObject})
+ * do kubełków przy pustych miejscach po dzieciach, czyli do wypukłych komórek przestrzeni, w których
+ * leży ich środek, i rysowane podczas przejścia w chwili, gdy przejście mija daną komórkę. Obiekt
+ * leżący w całości w komórce jest więc poprawnie uporządkowany względem ścian statycznych; obiekt
+ * przecinający płaszczyznę jest przypisany do strony swojego środka. Obiekty w jednym kubełku
+ * są rysowane od najdalszego.
+ */
+@Getter
+public class FlatBSPTree {
+    private final int nodeCount;
+    private final FloatBuffer planes;
+    private final IntBuffer front;
+    private final IntBuffer back;
+    private final IntBuffer faceStart;
+    private final IntBuffer faceCount;
+    private final FloatBuffer bounds;
+    private final FloatBuffer facePlanes;
+    // Liczba ścian w całym poddrzewie węzła
+    private final IntBuffer subtreeFaceCount;
+
+    // Ściany w kolejności węzłów; w drzewie wczytanym z pliku tworzone przy pierwszym użyciu
+    // z wierzchołków (4 na ścianę) i indeksów powierzchni w palecie surfaces
+    @Getter(AccessLevel.NONE)
+    private final Face[] faces;
+    private final FloatBuffer faceVertices;
+    private final IntBuffer faceSurfaces;
+    private final Surface[] surfaces;
+
+    // Rodzaje elementów stosu przejścia, zapisane w najniższych bitach (indeks węzła w pozostałych)
+    private static final int EXPAND = 0;
+    // Rozwinięcie węzła poza ostrosłupem: tylko w poszukiwaniu obiektów ruchomych
+    private static final int EXPAND_OUTSIDE = 1;
+    private static final int DRAW_FACES = 2;
+    private static final int DRAW_FRONT_BUCKET = 3;
+    private static final int DRAW_BACK_BUCKET = 4;
+    private static final int KIND_BITS = 3;
+    private static final int KIND_MASK = (1 << KIND_BITS) - 1;
+
+    private int[] stack;
+
+    // Obiekty ruchome bieżącej klatki: kubełek (węzeł * 2 + strona, 0 = przód, 1 = tył) wskazuje
+    // pierwszy element listy posortowanej od najdalszego; dynamicSubtreeCount to liczba obiektów w poddrzewie
+    private final int[] bucketHead;
+    private final int[] dynamicSubtreeCount;
+    private SceneObject[] dynamicObjects = new SceneObject[16];
+    private float[] dynamicDistance = new float[16];
+    private int[] dynamicNext = new int[16];
+    private int dynamicCount;
+
+    // Statystyki ostatniego przejścia
+    private int culledNodes;
+    private int culledFaces;
+
+    public FlatBSPTree(BSPTree tree) {
+        int nodes = 0;
+        int totalFaces = 0;
+        BSPNode root = tree.getRoot();
+
+        // Pierwsze przejście: liczba węzłów i ścian
+        BSPNode[] pending = new BSPNode[16];
+        int top = 0;
+        if (root != null) {
+            pending[top++] = root;
+        }
+        while (top > 0) {
+            BSPNode node = pending[--top];
+            nodes++;
+            totalFaces += node.getCoplanarFaces().size();
+            if (top + 2 > pending.length) {
+                pending = Arrays.copyOf(pending, pending.length * 2);
+            }
+            if (node.getBack() != null) {
+                pending[top++] = node.getBack();
+            }
+            if (node.getFront() != null) {
+                pending[top++] = node.getFront();
+            }
+        }
+
+        this.nodeCount = nodes;
+        this.planes = FloatBuffer.allocate(nodes * 4);
+        this.front = IntBuffer.allocate(nodes);
+        this.back = IntBuffer.allocate(nodes);
+        this.faceStart = IntBuffer.allocate(nodes);
+        this.faceCount = IntBuffer.allocate(nodes);
+        this.bounds = FloatBuffer.allocate(nodes * 6);
+        this.facePlanes = FloatBuffer.allocate(totalFaces * 4);
+        this.subtreeFaceCount = IntBuffer.allocate(nodes);
+        this.faces = new Face[totalFaces];
+        this.faceVertices = null;
+        this.faceSurfaces = null;
+        this.surfaces = null;
+        this.stack = new int[16];
+        this.bucketHead = new int[nodes * 2];
+        this.dynamicSubtreeCount = new int[nodes];
+        Arrays.fill(bucketHead, -1);
+
+        // Drugie przejście: węzły numerowane w kolejności odwiedzin (korzeń ma indeks 0),
+        // a indeks rodzica zapisywany jest razem z węzłem, żeby uzupełnić odnośniki do dzieci
+        BSPNode[] nodeStack = new BSPNode[pending.length];
+        int[] parentStack = new int[pending.length];
+        top = 0;
+        if (root != null) {
+            nodeStack[top] = root;
+            parentStack[top] = -1;
+            top++;
+        }
+
+        int nextNode = 0;
+        int nextFace = 0;
+        while (top > 0) {
+            top--;
+            BSPNode node = nodeStack[top];
+            int parent = parentStack[top];
+            int index = nextNode++;
+
+            if (parent >= 0) {
+                int parentIndex = parent >> 1;
+                if ((parent & 1) == 0) {
+                    front.put(parentIndex, index);
+                } else {
+                    back.put(parentIndex, index);
+                }
+            }
+
+            Plane plane = node.getPlane();
+            planes.put(index * 4, plane.getA());
+            planes.put(index * 4 + 1, plane.getB());
+            planes.put(index * 4 + 2, plane.getC());
+            planes.put(index * 4 + 3, plane.getD());
+            front.put(index, -1);
+            back.put(index, -1);
+
+            faceStart.put(index, nextFace);
+            faceCount.put(index, node.getCoplanarFaces().size());
+            for (Face face : node.getCoplanarFaces()) {
+                int f = nextFace * 4;
+                facePlanes.put(f, face.getNormalX());
+                facePlanes.put(f + 1, face.getNormalY());
+                facePlanes.put(f + 2, face.getNormalZ());
+                facePlanes.put(f + 3, -(face.getNormalX() * face.getCentroidX()
+                        + face.getNormalY() * face.getCentroidY()
+                        + face.getNormalZ() * face.getCentroidZ()));
+                faces[nextFace++] = face;
+            }
+
+            if (node.getBack() != null) {
+                nodeStack[top] = node.getBack();
+                parentStack[top] = (index << 1) | 1;
+                top++;
+            }
+            if (node.getFront() != null) {
+                nodeStack[top] = node.getFront();
+                parentStack[top] = index << 1;
+                top++;
+            }
+        }
+
+        computeBounds();
+    }
+
+    /**
+     * Drzewo na gotowych buforach (np. widokach pliku odwzorowanego w pamięci); nic nie jest kopiowane.
+     * Indeksy w {@code faceSurfaces} wskazują elementy {@code surfaces}.
+     */
+    FlatBSPTree(int nodeCount, FloatBuffer planes, IntBuffer front, IntBuffer back,
+                IntBuffer faceStart, IntBuffer faceCount, FloatBuffer bounds, IntBuffer subtreeFaceCount,
+                FloatBuffer facePlanes, FloatBuffer faceVertices, IntBuffer faceSurfaces, Surface[] surfaces) {
+        this.nodeCount = nodeCount;
+        this.planes = planes;
+        this.front = front;
+        this.back = back;
+        this.faceStart = faceStart;
+        this.faceCount = faceCount;
+        this.bounds = bounds;
+        this.subtreeFaceCount = subtreeFaceCount;
+        this.facePlanes = facePlanes;
+        this.faces = new Face[faceSurfaces.limit()];
+        this.faceVertices = faceVertices;
+        this.faceSurfaces = faceSurfaces;
+        this.surfaces = surfaces;
+        this.stack = new int[16];
+        this.bucketHead = new int[nodeCount * 2];
+        this.dynamicSubtreeCount = new int[nodeCount];
+        Arrays.fill(bucketHead, -1);
+    }
+
+    /**
+     * Dzieci mają zawsze większe indeksy niż rodzic, więc przejście od końca
+     * liczy prostopadłościany (i liczby ścian) poddrzew przed prostopadłościanami ich rodziców.
+     */
+    private void computeBounds() {
+        for (int node = nodeCount - 1; node >= 0; node--) {
+            int b = node * 6;
+            for (int axis = 0; axis < 3; axis++) {
+                bounds.put(b + axis, Float.POSITIVE_INFINITY);
+                bounds.put(b + 3 + axis, Float.NEGATIVE_INFINITY);
+            }
+
+            int end = faceStart.get(node) + faceCount.get(node);
+            for (int i = faceStart.get(node); i < end; i++) {
+                for (Edge edge : faces[i].getEdges()) {
+                    SimpleMatrix vertex = edge.getStart();
+                    includePoint(b, (float) vertex.get(0), (float) vertex.get(1), (float) vertex.get(2));
+                }
+            }
+
+            int frontChild = front.get(node);
+            int backChild = back.get(node);
+            includeChild(b, frontChild);
+            includeChild(b, backChild);
+
+            subtreeFaceCount.put(node, faceCount.get(node)
+                    + (frontChild >= 0 ? subtreeFaceCount.get(frontChild) : 0)
+                    + (backChild >= 0 ? subtreeFaceCount.get(backChild) : 0));
+        }
+    }
+
+    private void includePoint(int b, float x, float y, float z) {
+        bounds.put(b, Math.min(bounds.get(b), x));
+        bounds.put(b + 1, Math.min(bounds.get(b + 1), y));
+        bounds.put(b + 2, Math.min(bounds.get(b + 2), z));
+        bounds.put(b + 3, Math.max(bounds.get(b + 3), x));
+        bounds.put(b + 4, Math.max(bounds.get(b + 4), y));
+        bounds.put(b + 5, Math.max(bounds.get(b + 5), z));
+    }
+
+    private void includeChild(int b, int child) {
+        if (child < 0) {
+            return;
+        }
+        int c = child * 6;
+        includePoint(b, bounds.get(c), bounds.get(c + 1), bounds.get(c + 2));
+        includePoint(b, bounds.get(c + 3), bounds.get(c + 4), bounds.get(c + 5));
+    }
+
+    public float distanceToPoint(int node, float x, float y, float z) {
+        int p = node * 4;
+        return planes.get(p) * x + planes.get(p + 1) * y + planes.get(p + 2) * z + planes.get(p + 3);
+    }
+
+    public int getTotalFaceCount() {
+        return faces.length;
+    }
+
+    /**
+     * Ściana o indeksie {@code index}; w drzewie wczytanym z pliku tworzona przy pierwszym wywołaniu.
+     */
+    public Face getFace(int index) {
+        Face face = faces[index];
+        if (face == null) {
+            float[] vertices = new float[12];
+            for (int i = 0; i < 12; i++) {
+                vertices[i] = faceVertices.get(index * 12 + i);
+            }
+            face = new Face(vertices, surfaces[faceSurfaces.get(index)]);
+            faces[index] = face;
+        }
+        return face;
+    }
+
+    /**
+     * Usuwa obiekty ruchome wstawione w poprzedniej klatce.
+     */
+    public void clearDynamicObjects() {
+        if (dynamicCount > 0) {
+            Arrays.fill(bucketHead, -1);
+            Arrays.fill(dynamicSubtreeCount, 0);
+            Arrays.fill(dynamicObjects, 0, dynamicCount, null);
+            dynamicCount = 0;
+        }
+    }
+
+    /**
+     * Wstawia obiekt o środku (x, y, z) do kubełka komórki, w której leży środek; {@code distance}
+     * (np. kwadrat odległości od kamery) ustala kolejność w kubełku. Koszt to jedna płaszczyzna na poziom drzewa.
+     */
+    public void insertDynamicObject(SceneObject object, float x, float y, float z, float distance) {
+        if (nodeCount == 0) {
+            throw new IllegalStateException("Dynamic objects need a non-empty tree");
+        }
+
+        int node = 0;
+        int bucket;
+        while (true) {
+            dynamicSubtreeCount[node]++;
+            if (distanceToPoint(node, x, y, z) >= 0) {
+                int child = front.get(node);
+                if (child < 0) {
+                    bucket = node * 2;
+                    break;
+                }
+                node = child;
+            } else {
+                int child = back.get(node);
+                if (child < 0) {
+                    bucket = node * 2 + 1;
+                    break;
+                }
+                node = child;
+            }
+        }
+
+        if (dynamicCount == dynamicObjects.length) {
+            int capacity = dynamicCount * 2;
+            dynamicObjects = Arrays.copyOf(dynamicObjects, capacity);
+            dynamicDistance = Arrays.copyOf(dynamicDistance, capacity);
+            dynamicNext = Arrays.copyOf(dynamicNext, capacity);
+        }
+        int entry = dynamicCount++;
+        dynamicObjects[entry] = object;
+        dynamicDistance[entry] = distance;
+
+        // Wstawienie do listy uporządkowanej malejąco po odległości
+        int previous = -1;
+        int current = bucketHead[bucket];
+        while (current >= 0 && dynamicDistance[current] >= distance) {
+            previous = current;
+            current = dynamicNext[current];
+        }
+        dynamicNext[entry] = current;
+        if (previous < 0) {
+            bucketHead[bucket] = entry;
+        } else {
+            dynamicNext[previous] = entry;
+        }
+    }
+
+    /**
+     * Rysuje ściany od najdalszych do najbliższych względem kamery (x, y, z).
+     */
+    public void render(Renderer renderer, float x, float y, float z) {
+        render(renderer, x, y, z, null, false);
+    }
+
+    /**
+     * Jak {@link #render(Renderer, float, float, float)}, ale pomija poddrzewa, których
+     * prostopadłościan leży poza {@code frustum} (gdy nie jest null), oraz, gdy
+     * {@code backFaceCulling}, ściany, za których płaszczyzną znajduje się kamera.
+     */
+    public void render(Renderer renderer, float x, float y, float z, Frustum frustum, boolean backFaceCulling) {
+        culledNodes = 0;
+        culledFaces = 0;
+
+        if (nodeCount == 0) {
+            return;
+        }
+
+        int top = 0;
+        stack[top++] = EXPAND;
+
+        while (top > 0) {
+            int entry = stack[--top];
+            int kind = entry & KIND_MASK;
+            int node = entry >>> KIND_BITS;
+
+            if (kind == DRAW_FACES) {
+                int start = faceStart.get(node);
+                int end = start + faceCount.get(node);
+                for (int i = start; i < end; i++) {
+                    if (backFaceCulling && isBackFace(i, x, y, z)) {
+                        culledFaces++;
+                        continue;
+                    }
+                    renderer.fillFace(getFace(i));
+                }
+                continue;
+            }
+            if (kind == DRAW_FRONT_BUCKET || kind == DRAW_BACK_BUCKET) {
+                int bucket = node * 2 + (kind == DRAW_BACK_BUCKET ? 1 : 0);
+                for (int i = bucketHead[bucket]; i >= 0; i = dynamicNext[i]) {
+                    dynamicObjects[i].draw(renderer);
+                }
+                continue;
+            }
+
+            // Prostopadłościan obejmuje tylko ściany statyczne, więc poddrzewo poza ostrosłupem
+            // jest dalej przechodzone wyłącznie wtedy, gdy zawiera obiekty ruchome
+            boolean outside = kind == EXPAND_OUTSIDE;
+            if (!outside && frustum != null && !isInFrustum(node, frustum)) {
+                culledNodes++;
+                culledFaces += subtreeFaceCount.get(node);
+                outside = true;
+            }
+            if (outside && dynamicSubtreeCount[node] == 0) {
+                continue;
+            }
+
+            if (top + 3 > stack.length) {
+                stack = Arrays.copyOf(stack, stack.length * 2);
+            }
+
+            // Elementy odkładane w odwrotnej kolejności: najpierw odwiedzana jest strona dalsza
+            boolean cameraInFront = distanceToPoint(node, x, y, z) >= 0;
+            int expand = outside ? EXPAND_OUTSIDE : EXPAND;
+            top = pushSide(node, cameraInFront, expand, top);
+            if (!outside) {
+                stack[top++] = (node << KIND_BITS) | DRAW_FACES;
+            }
+            top = pushSide(node, !cameraInFront, expand, top);
+        }
+    }
+
+    /**
+     * Odkłada stronę węzła: dziecko do rozwinięcia albo, gdy go nie ma, kubełek obiektów ruchomych.
+     */
+    private int pushSide(int node, boolean frontSide, int expand, int top) {
+        int child = frontSide ? front.get(node) : back.get(node);
+        if (child >= 0) {
+            stack[top++] = (child << KIND_BITS) | expand;
+        } else if (bucketHead[node * 2 + (frontSide ? 0 : 1)] >= 0) {
+            stack[top++] = (node << KIND_BITS) | (frontSide ? DRAW_FRONT_BUCKET : DRAW_BACK_BUCKET);
+        }
+        return top;
+    }
+
+    private boolean isInFrustum(int node, Frustum frustum) {
+        int b = node * 6;
+        return frustum.intersectsBox(bounds.get(b), bounds.get(b + 1), bounds.get(b + 2),
+                bounds.get(b + 3), bounds.get(b + 4), bounds.get(b + 5));
+    }
+
+    private boolean isBackFace(int face, float x, float y, float z) {
+        int p = face * 4;
+        return facePlanes.get(p) * x + facePlanes.get(p + 1) * y + facePlanes.get(p + 2) * z + facePlanes.get(p + 3) <= 0;
+    }
+}
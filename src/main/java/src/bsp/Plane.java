@@ -4,13 +4,16 @@ import lombok.Data;
 import org.ejml.simple.SimpleMatrix;
 import src.Edge;
 import src.Face;
+import src.Surface;
 
-import java.awt.*;
 import java.util.ArrayList;
 import java.util.List;
 
 @Data
 public class Plane {
+    // Tolerancja odległości, poniżej której punkt uznaje się za leżący w płaszczyźnie
+    public static final float EPSILON = 0.0001f;
+
     // Równanie płaszczyzny: ax + by + cz + d = 0
     private float a, b, c, d;
 
@@ -59,6 +62,10 @@ public class Plane {
         }
     }
 
+    public boolean isDegenerate() {
+        return a == 0 && b == 0 && c == 0;
+    }
+
     public float distanceToPoint(SimpleMatrix point) {
         return a * (float)point.get(0) + b * (float)point.get(1) + c * (float)point.get(2) + d;
     }
@@ -73,15 +80,14 @@ public class Plane {
     public int classifyFace(Face face) {
         int frontCount = 0;
         int backCount = 0;
-        float epsilon = 0.0001f;
 
         for (Edge edge : face.getEdges()) {
             SimpleMatrix vertex = edge.getStart();
             float distance = distanceToPoint(vertex);
 
-            if (distance > epsilon) {
+            if (distance > EPSILON) {
                 frontCount++;
-            } else if (distance < -epsilon) {
+            } else if (distance < -EPSILON) {
                 backCount++;
             }
         }
@@ -104,8 +110,8 @@ public class Plane {
         float d1 = distanceToPoint(p1);
         float d2 = distanceToPoint(p2);
 
-        if (Math.abs(d1) < 0.0001f) {
-            d1 = 0.0001f;
+        if (Math.abs(d1) < EPSILON) {
+            d1 = EPSILON;
         }
 
         float t = d1 / (d1 - d2);
@@ -117,10 +123,22 @@ public class Plane {
         return new SimpleMatrix(3, 1, true, new float[] {x, y, z});
     }
 
-    public Face[] splitFace(Face face) {
+    /**
+     * Dzieli ścianę przecinającą płaszczyznę. Wierzchołki leżące w płaszczyźnie (z tą samą
+     * tolerancją co w {@link #classifyFace(Face)}) trafiają do obu części. Część o więcej niż
+     * czterech wierzchołkach jest dzielona na kilka ścian, więc żaden wierzchołek nie ginie.
+     */
+    public void splitFace(Face face, List<Face> frontFaces, List<Face> backFaces) {
         List<SimpleMatrix> vertices = new ArrayList<>();
         for (Edge edge : face.getEdges()) {
-            vertices.add(edge.getStart());
+            SimpleMatrix vertex = edge.getStart();
+            // Trójkąty są zapisane z powtórzonym wierzchołkiem
+            if (vertices.isEmpty() || !samePoint(vertices.get(vertices.size() - 1), vertex)) {
+                vertices.add(vertex);
+            }
+        }
+        if (vertices.size() > 1 && samePoint(vertices.get(0), vertices.get(vertices.size() - 1))) {
+            vertices.remove(vertices.size() - 1);
         }
 
         List<SimpleMatrix> frontVertices = new ArrayList<>();
@@ -134,13 +152,16 @@ public class Plane {
             float currentDist = distanceToPoint(current);
             float nextDist = distanceToPoint(next);
 
-            if (currentDist >= 0) {
+            if (currentDist > EPSILON) {
                 frontVertices.add(current);
+            } else if (currentDist < -EPSILON) {
+                backVertices.add(current);
             } else {
+                frontVertices.add(current);
                 backVertices.add(current);
             }
 
-            if ((currentDist > 0 && nextDist < 0) || (currentDist < 0 && nextDist > 0)) {
+            if ((currentDist > EPSILON && nextDist < -EPSILON) || (currentDist < -EPSILON && nextDist > EPSILON)) {
                 SimpleMatrix intersection = findIntersection(current, next);
 
                 frontVertices.add(intersection);
@@ -148,45 +169,35 @@ public class Plane {
             }
         }
 
-        Face frontFace = createFaceFromVertices(frontVertices, face.getColor());
-        Face backFace = createFaceFromVertices(backVertices, face.getColor());
-
-        return new Face[] { frontFace, backFace };
+        addFacesFromVertices(frontVertices, face.getSurface(), frontFaces);
+        addFacesFromVertices(backVertices, face.getSurface(), backFaces);
     }
 
-    private Face createFaceFromVertices(List<SimpleMatrix> vertices, Color color) {
-        if (vertices.size() == 3) {
-            // Trójkąt
-            float[] coords = new float[9];
-            for (int i = 0; i < 3; i++) {
-                SimpleMatrix v = vertices.get(i);
-                coords[i*3] = (float)v.get(0);
-                coords[i*3 + 1] = (float)v.get(1);
-                coords[i*3 + 2] = (float)v.get(2);
-            }
-
-            float[] quadCoords = new float[12];
-            System.arraycopy(coords, 0, quadCoords, 0, 9);
-            quadCoords[9] = coords[6];
-            quadCoords[10] = coords[7];
-            quadCoords[11] = coords[8];
+    private static boolean samePoint(SimpleMatrix p1, SimpleMatrix p2) {
+        return p1 == p2 || (p1.get(0) == p2.get(0) && p1.get(1) == p2.get(1) && p1.get(2) == p2.get(2));
+    }
 
-            return new Face(quadCoords, color);
+    /**
+     * Zamienia wielokąt wypukły na ściany czterowierzchołkowe (wachlarz z pierwszego wierzchołka).
+     */
+    private void addFacesFromVertices(List<SimpleMatrix> vertices, Surface surface, List<Face> faces) {
+        int count = vertices.size();
+        if (count < 3) {
+            return;
         }
-        else if (vertices.size() >= 4) {
-            // Czworokąt
-            float[] coords = new float[12];
-            for (int i = 0; i < 4; i++) {
-                SimpleMatrix v = vertices.get(i);
-                coords[i*3] = (float)v.get(0);
-                coords[i*3 + 1] = (float)v.get(1);
-                coords[i*3 + 2] = (float)v.get(2);
-            }
 
-            return new Face(coords, color);
-        }
-        else {
-            throw new IllegalStateException("Not enough vertices to create a face after splitting");
+        SimpleMatrix first = vertices.get(0);
+        int i = 1;
+        while (i + 1 < count) {
+            if (i + 2 < count) {
+                // Czworokąt
+                faces.add(new Face(new SimpleMatrix[] {first, vertices.get(i), vertices.get(i + 1), vertices.get(i + 2)}, surface));
+                i += 2;
+            } else {
+                // Trójkąt
+                faces.add(new Face(new SimpleMatrix[] {first, vertices.get(i), vertices.get(i + 1), first}, surface));
+                i += 1;
+            }
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,120 @@
+package src.bsp;
+
+import lombok.Getter;
+import src.Face;
+
+import java.util.List;
+
+/**
+ * Sposób wyboru płaszczyzny podziału w {@link BSPTree}.
+ * <p>
+ * Z bieżącej listy ścian wybieranych jest równomiernie {@code candidateSamples} kandydatów.
+ * Każdy kandydat jest oceniany przez klasyfikację co najwyżej {@code evaluationSamples}
+ * równomiernie wybranych ścian: {@code splitWeight * podziały + balanceWeight * |przód - tył|};
+ * wygrywa najniższy wynik.
+ * Próbkowanie jest deterministyczne, więc ta sama scena zawsze daje to samo drzewo.
+ */
+@Getter
+public class SplitterHeuristic {
+    // Pierwsza ściana z listy, bez oceniania (dawne zachowanie)
+    public static final SplitterHeuristic FIRST_FACE = new SplitterHeuristic("First face", 1, 0, 0, 0);
+    // Przede wszystkim minimalizacja liczby podziałów
+    public static final SplitterHeuristic LEAST_SPLITS = new SplitterHeuristic("Least splits", 16, 128, 8.0f, 1.0f);
+    // Płytsze drzewa kosztem większej liczby podziałów
+    public static final SplitterHeuristic BALANCED = new SplitterHeuristic("Balanced", 16, 128, 2.0f, 4.0f);
+
+    public static final SplitterHeuristic[] PRESETS = {FIRST_FACE, LEAST_SPLITS, BALANCED};
+
+    private final String name;
+    private final int candidateSamples;
+    private final int evaluationSamples;
+    private final float splitWeight;
+    private final float balanceWeight;
+
+    public SplitterHeuristic(String name, int candidateSamples, int evaluationSamples,
+                             float splitWeight, float balanceWeight) {
+        if (candidateSamples < 1) {
+            throw new IllegalArgumentException("At least one candidate plane must be sampled");
+        }
+
+        this.name = name;
+        this.candidateSamples = candidateSamples;
+        this.evaluationSamples = evaluationSamples;
+        this.splitWeight = splitWeight;
+        this.balanceWeight = balanceWeight;
+    }
+
+    /**
+     * @return indeks ściany wybranej jako płaszczyzna podziału
+     */
+    public int selectPartition(List<Face> faces) {
+        int count = faces.size();
+        int samples = Math.min(candidateSamples, count);
+        if (samples <= 1) {
+            return 0;
+        }
+
+        int bestIndex = -1;
+        float bestScore = Float.MAX_VALUE;
+
+        for (int s = 0; s < samples; s++) {
+            int candidate = (int) ((long) s * count / samples);
+            Plane plane = Plane.fromFace(faces.get(candidate));
+
+            // Ściany zdegenerowane nie wyznaczają płaszczyzny
+            if (plane.isDegenerate()) {
+                continue;
+            }
+
+            float score = score(plane, faces, candidate, bestScore);
+            if (score < bestScore) {
+                bestScore = score;
+                bestIndex = candidate;
+            }
+        }
+
+        return bestIndex < 0 ? 0 : bestIndex;
+    }
+
+    private float score(Plane plane, List<Face> faces, int candidate, float bestScore) {
+        int front = 0;
+        int back = 0;
+        int splits = 0;
+
+        int count = faces.size();
+        int samples = Math.min(evaluationSamples, count);
+
+        for (int s = 0; s < samples; s++) {
+            int i = (int) ((long) s * count / samples);
+            if (i == candidate) {
+                continue;
+            }
+
+            switch (plane.classifyFace(faces.get(i))) {
+                case 1:
+                    front++;
+                    break;
+                case -1:
+                    back++;
+                    break;
+                case 2:
+                    splits++;
+                    front++;
+                    back++;
+                    break;
+            }
+
+            // Podziały tylko rosną, więc gorszego kandydata można odrzucić wcześniej
+            if (splitWeight * splits >= bestScore) {
+                return Float.MAX_VALUE;
+            }
+        }
+
+        return splitWeight * splits + balanceWeight * Math.abs(front - back);
+    }
+
+    @Override
+    public String toString() {
+        return name;
+    }
+}
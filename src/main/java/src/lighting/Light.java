@@ -6,15 +6,47 @@ import java.awt.Color;
 
 @Data
 public class Light {
+    // Wkład kanału poniżej pół poziomu zaokrągla się do zera (próg 0.5 / 255, z zapasem na błędy float)
+    public static final float MIN_CONTRIBUTION = 0.5f / 256.0f;
+
     private SimpleMatrix position;
     private Color color;
     private float intensity;
     private float ambientIntensity;
 
+    // Tłumienie 1 / (constant + linear * d + quadratic * d^2)
+    private float constantAttenuation = 1.0f;
+    private float linearAttenuation = 0.5f;
+    private float quadraticAttenuation = 0.2f;
+
     public Light(float x, float y, float z, Color color, float intensity, float ambientIntensity) {
         this.position = new SimpleMatrix(3, 1, true, new float[]{x, y, z});
         this.color = color;
         this.intensity = intensity;
         this.ambientIntensity = ambientIntensity;
     }
-}
\ No newline at end of file
+
+    /**
+     * Odległość, poza którą tłumione światło daje w każdym kanale wkład mniejszy niż {@link #MIN_CONTRIBUTION}
+     * (rozwiązanie intensity * response / (c + l*d + q*d^2) = MIN_CONTRIBUTION), czyli zaokrąglany do zera.
+     * Bez tłumienia zależnego od odległości zasięg jest nieskończony.
+     *
+     * @param response największa suma współczynników rozproszenia i odbicia ({@link Material#getDirectResponse()})
+     */
+    public float getCutoffRadius(float response) {
+        float c = constantAttenuation - intensity * response / MIN_CONTRIBUTION;
+        float l = linearAttenuation;
+        float q = quadraticAttenuation;
+
+        if (c >= 0) {
+            return 0;
+        }
+        if (q > 0) {
+            return (float) ((-l + Math.sqrt(l * l - 4 * q * c)) / (2 * q));
+        }
+        if (l > 0) {
+            return -c / l;
+        }
+        return Float.POSITIVE_INFINITY;
+    }
+}
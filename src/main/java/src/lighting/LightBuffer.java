@@ -0,0 +1,73 @@
+package src.lighting;
+
+import lombok.Getter;
+import org.ejml.simple.SimpleMatrix;
+
+import java.awt.Color;
+import java.util.List;
+
+/**
+ * Światła spakowane do jednej tablicy float na potrzeby wsadowego cieniowania:
+ * pozycja (x, y, z), kolor (r, g, b w zakresie 0..1), intensywność, intensywność otoczenia,
+ * trzy współczynniki tłumienia i zasięg. Tablica jest odświeżana raz na klatkę i używana ponownie,
+ * razem z siatką {@link LightGrid} przypisującą światła do obszarów, do których sięgają.
+ */
+@Getter
+public class LightBuffer {
+    public static final int STRIDE = 12;
+    public static final int RADIUS = 11;
+
+    private float[] data = new float[STRIDE * 4];
+    private int size;
+    // Oświetlenie otoczenia nie zależy od odległości, więc jest sumowane dla wszystkich świateł
+    private float totalAmbientIntensity;
+    private final LightGrid grid = new LightGrid();
+    // Zasięgi są liczone dla materiałów o sumie współczynników rozproszenia i odbicia do tej wartości
+    private float materialResponse = 1.0f;
+
+    /**
+     * Ustawia największą sumę współczynników rozproszenia i odbicia cieniowanych materiałów;
+     * zaczyna obowiązywać przy następnym {@link #update(List)}.
+     */
+    public void setMaterialResponse(float materialResponse) {
+        this.materialResponse = materialResponse;
+    }
+
+    public void update(List<Light> lights) {
+        if (data.length < lights.size() * STRIDE) {
+            data = new float[lights.size() * STRIDE];
+        }
+
+        size = 0;
+        totalAmbientIntensity = 0;
+        for (Light light : lights) {
+            pack(light, data, size * STRIDE, materialResponse);
+            totalAmbientIntensity += light.getAmbientIntensity();
+            size++;
+        }
+
+        grid.build(data, size);
+    }
+
+    public static void pack(Light light, float[] data, int offset, float materialResponse) {
+        SimpleMatrix position = light.getPosition();
+        Color color = light.getColor();
+
+        data[offset] = (float) position.get(0);
+        data[offset + 1] = (float) position.get(1);
+        data[offset + 2] = (float) position.get(2);
+        data[offset + 3] = color.getRed() / 255f;
+        data[offset + 4] = color.getGreen() / 255f;
+        data[offset + 5] = color.getBlue() / 255f;
+        data[offset + 6] = light.getIntensity();
+        data[offset + 7] = light.getAmbientIntensity();
+        data[offset + 8] = light.getConstantAttenuation();
+        data[offset + 9] = light.getLinearAttenuation();
+        data[offset + 10] = light.getQuadraticAttenuation();
+        data[offset + RADIUS] = light.getCutoffRadius(materialResponse);
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+}
@@ -0,0 +1,179 @@
+package src.lighting;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+
+/**
+ * Jednorodna siatka komórek w przestrzeni świata. Każda komórka zna światła, których
+ * sfera zasięgu ją przecina, więc punkt sprawdza tylko światła ze swojej komórki.
+ * Światła o nieskończonym zasięgu trafiają na osobną listę sprawdzaną zawsze.
+ * Listy komórek są zapisane ciągiem w {@code cellLights}, a komórka c zajmuje
+ * zakres [{@code cellStart[c]}, {@code cellStart[c + 1]}).
+ */
+@Getter
+public class LightGrid {
+    private static final int MAX_CELLS_PER_AXIS = 16;
+
+    private float minX;
+    private float minY;
+    private float minZ;
+    private float inverseCellSize;
+    private int cellsX;
+    private int cellsY;
+    private int cellsZ;
+
+    private int[] cellStart = new int[1];
+    private int[] cellLights = new int[0];
+    private int[] globalLights = new int[0];
+    private int globalCount;
+
+    public void build(float[] lightData, int lightCount) {
+        if (globalLights.length < lightCount) {
+            globalLights = new int[lightCount];
+        }
+        globalCount = 0;
+
+        float maxX = Float.NEGATIVE_INFINITY, maxY = Float.NEGATIVE_INFINITY, maxZ = Float.NEGATIVE_INFINITY;
+        minX = minY = minZ = Float.POSITIVE_INFINITY;
+        int boundedCount = 0;
+
+        for (int l = 0; l < lightCount; l++) {
+            int offset = l * LightBuffer.STRIDE;
+            float radius = lightData[offset + LightBuffer.RADIUS];
+
+            if (Float.isInfinite(radius)) {
+                globalLights[globalCount++] = l;
+                continue;
+            }
+
+            minX = Math.min(minX, lightData[offset] - radius);
+            minY = Math.min(minY, lightData[offset + 1] - radius);
+            minZ = Math.min(minZ, lightData[offset + 2] - radius);
+            maxX = Math.max(maxX, lightData[offset] + radius);
+            maxY = Math.max(maxY, lightData[offset + 1] + radius);
+            maxZ = Math.max(maxZ, lightData[offset + 2] + radius);
+            boundedCount++;
+        }
+
+        if (boundedCount == 0) {
+            cellsX = cellsY = cellsZ = 0;
+            cellStart[0] = 0;
+            return;
+        }
+
+        float extent = Math.max(maxX - minX, Math.max(maxY - minY, maxZ - minZ));
+        float cellSize = Math.max(extent / MAX_CELLS_PER_AXIS, 1e-3f);
+        inverseCellSize = 1.0f / cellSize;
+        cellsX = cellCount(maxX - minX);
+        cellsY = cellCount(maxY - minY);
+        cellsZ = cellCount(maxZ - minZ);
+
+        int cellTotal = cellsX * cellsY * cellsZ;
+        if (cellStart.length < cellTotal + 1) {
+            cellStart = new int[cellTotal + 1];
+        }
+
+        // Pierwsze przejście liczy światła w komórkach, drugie je zapisuje
+        Arrays.fill(cellStart, 0, cellTotal + 1, 0);
+        for (int l = 0; l < lightCount; l++) {
+            forEachCell(lightData, l, null);
+        }
+
+        int total = 0;
+        for (int c = 0; c < cellTotal; c++) {
+            int count = cellStart[c];
+            cellStart[c] = total;
+            total += count;
+        }
+        cellStart[cellTotal] = total;
+
+        if (cellLights.length < total) {
+            cellLights = new int[total];
+        }
+        for (int l = 0; l < lightCount; l++) {
+            forEachCell(lightData, l, cellLights);
+        }
+
+        // Zapis przesunął początki komórek na ich końce
+        for (int c = cellTotal; c > 0; c--) {
+            cellStart[c] = cellStart[c - 1];
+        }
+        cellStart[0] = 0;
+    }
+
+    /**
+     * Indeks komórki zawierającej punkt albo -1, gdy punkt leży poza zasięgiem wszystkich świateł siatki.
+     */
+    public int cellIndex(float x, float y, float z) {
+        int cx = (int) Math.floor((x - minX) * inverseCellSize);
+        int cy = (int) Math.floor((y - minY) * inverseCellSize);
+        int cz = (int) Math.floor((z - minZ) * inverseCellSize);
+
+        if (cx < 0 || cy < 0 || cz < 0 || cx >= cellsX || cy >= cellsY || cz >= cellsZ) {
+            return -1;
+        }
+        return (cz * cellsY + cy) * cellsX + cx;
+    }
+
+    private int cellCount(float size) {
+        return Math.max(1, Math.min(MAX_CELLS_PER_AXIS, (int) Math.ceil(size * inverseCellSize)));
+    }
+
+    /**
+     * Odwiedza komórki przecinane przez sferę zasięgu światła: bez {@code target} zlicza je
+     * w {@code cellStart}, z {@code target} zapisuje indeks światła i przesuwa początek komórki.
+     */
+    private void forEachCell(float[] lightData, int light, int[] target) {
+        int offset = light * LightBuffer.STRIDE;
+        float radius = lightData[offset + LightBuffer.RADIUS];
+        if (Float.isInfinite(radius)) {
+            return;
+        }
+
+        float x = lightData[offset], y = lightData[offset + 1], z = lightData[offset + 2];
+        float cellSize = 1.0f / inverseCellSize;
+
+        int x0 = clampCell((int) Math.floor((x - radius - minX) * inverseCellSize), cellsX);
+        int x1 = clampCell((int) Math.floor((x + radius - minX) * inverseCellSize), cellsX);
+        int y0 = clampCell((int) Math.floor((y - radius - minY) * inverseCellSize), cellsY);
+        int y1 = clampCell((int) Math.floor((y + radius - minY) * inverseCellSize), cellsY);
+        int z0 = clampCell((int) Math.floor((z - radius - minZ) * inverseCellSize), cellsZ);
+        int z1 = clampCell((int) Math.floor((z + radius - minZ) * inverseCellSize), cellsZ);
+
+        for (int cz = z0; cz <= z1; cz++) {
+            for (int cy = y0; cy <= y1; cy++) {
+                for (int cx = x0; cx <= x1; cx++) {
+                    // Odległość od środka sfery do najbliższego punktu komórki
+                    float dx = distanceToRange(x, minX + cx * cellSize, cellSize);
+                    float dy = distanceToRange(y, minY + cy * cellSize, cellSize);
+                    float dz = distanceToRange(z, minZ + cz * cellSize, cellSize);
+                    if (dx * dx + dy * dy + dz * dz > radius * radius) {
+                        continue;
+                    }
+
+                    int cell = (cz * cellsY + cy) * cellsX + cx;
+                    if (target == null) {
+                        cellStart[cell]++;
+                    } else {
+                        target[cellStart[cell]++] = light;
+                    }
+                }
+            }
+        }
+    }
+
+    private static int clampCell(int cell, int count) {
+        return Math.max(0, Math.min(count - 1, cell));
+    }
+
+    private static float distanceToRange(float value, float start, float size) {
+        if (value < start) {
+            return start - value;
+        }
+        if (value > start + size) {
+            return value - start - size;
+        }
+        return 0;
+    }
+}
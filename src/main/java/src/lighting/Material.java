@@ -3,7 +3,7 @@ package src.lighting;
 import lombok.Data;
 import org.ejml.simple.SimpleMatrix;
 import src.Face;
-import src.bsp.Plane;
+import src.Mesh;
 import java.awt.Color;
 
 @Data
@@ -20,107 +20,224 @@ public class Material {
         this.shininess = shininess;
     }
 
+    /**
+     * Górna granica wkładu jednego światła w kanał przy intensywności i tłumieniu równych 1;
+     * od niej zależy zasięg świateł w {@link LightBuffer}.
+     */
+    public float getDirectResponse() {
+        return diffuseCoef + specularCoef;
+    }
+
+    /**
+     * Normalna i środek ściany pochodzą z atrybutów policzonych przy jej tworzeniu.
+     */
     public Color calculatePhongColor(Face face, SimpleMatrix cameraPosition, Light light) {
-        Plane plane = Plane.fromFace(face);
-        SimpleMatrix normal = new SimpleMatrix(3, 1, true, new float[]{plane.getA(), plane.getB(), plane.getC()});
+        return calculatePhongColor(
+                face.getNormalX(), face.getNormalY(), face.getNormalZ(),
+                face.getCentroidX(), face.getCentroidY(), face.getCentroidZ(),
+                face.getColor(), cameraPosition, light);
+    }
+
+    /**
+     * Wariant dla siatki indeksowanej, korzystający z normalnych i środków trójkątów siatki.
+     */
+    public Color calculatePhongColor(Mesh mesh, int triangle, Color baseColor,
+                                     SimpleMatrix cameraPosition, Light light) {
+        float[] normals = mesh.getNormals();
+        float[] centroids = mesh.getCentroids();
+        int i = triangle * 3;
+
+        return calculatePhongColor(normals[i], normals[i + 1], normals[i + 2],
+                centroids[i], centroids[i + 1], centroids[i + 2], baseColor, cameraPosition, light);
+    }
+
+    private Color calculatePhongColor(float nx, float ny, float nz, float cx, float cy, float cz,
+                                      Color baseColor, SimpleMatrix cameraPosition, Light light) {
+        float[] lightData = new float[LightBuffer.STRIDE];
+        LightBuffer.pack(light, lightData, 0, getDirectResponse());
+
+        int contribution = phongContribution(nx, ny, nz, cx, cy, cz, baseColor.getRGB(),
+                (float) cameraPosition.get(0), (float) cameraPosition.get(1), (float) cameraPosition.get(2),
+                lightData, 0, light.getAmbientIntensity() * ambientCoef * 0.2f);
+        return new Color(contribution);
+    }
+
+    /**
+     * Cieniuje wsadowo elementy o jednolitym kolorze bazowym. Dla k z zakresu [from, to)
+     * cieniowany jest element {@code elements[k]} (lub k, gdy {@code elements == null}),
+     * a wynik ARGB trafia do {@code out[k]}. Normalne i pozycje są zapisane po 3 liczby na element.
+     * Metoda nie alokuje pamięci, a rozłączne zakresy mogą być liczone w osobnych wątkach.
+     * Element sprawdza tylko światła z komórki {@link LightGrid}, w której leży, i pomija
+     * te, których zasięg nie sięga jego pozycji. Wkład każdego światła jest zaokrąglany osobno, więc
+     * pominięte światło (poza zasięgiem) i tak dałoby zero; bufor świateł musi być spakowany dla
+     * {@link #getDirectResponse()} co najmniej takiego jak ten materiał. Oświetlenie otoczenia jest
+     * sumowane dla wszystkich świateł i zaokrąglane raz.
+     */
+    public void shadeBatch(float[] normals, float[] positions, int[] elements, int from, int to,
+                           int baseColor, LightBuffer lights,
+                           float cameraX, float cameraY, float cameraZ, int[] out) {
+        shade(normals, positions, elements, from, to, null, baseColor, lights, cameraX, cameraY, cameraZ, out);
+    }
 
-        SimpleMatrix centroid = calculateFaceCentroid(face);
+    /**
+     * Jak wyżej, ale z kolorem bazowym RGB dla każdego elementu ({@code baseColors[element]}).
+     */
+    public void shadeBatch(float[] normals, float[] positions, int[] elements, int from, int to,
+                           int[] baseColors, LightBuffer lights,
+                           float cameraX, float cameraY, float cameraZ, int[] out) {
+        shade(normals, positions, elements, from, to, baseColors, 0, lights, cameraX, cameraY, cameraZ, out);
+    }
 
-        SimpleMatrix fromCenter = centroid.minus(new SimpleMatrix(3, 1, true,
-                new float[]{0.0f, 0.0f, 4.0f}));
-        if (dotProduct(normal, fromCenter) < 0) {
-            normal = normal.scale(-1);
+    private void shade(float[] normals, float[] positions, int[] elements, int from, int to,
+                       int[] baseColors, int uniformColor, LightBuffer lights,
+                       float cameraX, float cameraY, float cameraZ, int[] out) {
+        if (getDirectResponse() > lights.getMaterialResponse()) {
+            throw new IllegalStateException("Light ranges were packed for a weaker material response");
         }
 
-        SimpleMatrix lightVector = light.getPosition().minus(centroid);
-        float distanceToLight = vectorLength(lightVector);
-        SimpleMatrix lightDirection = normalizeVector(lightVector);
+        float[] lightData = lights.getData();
+        LightGrid grid = lights.getGrid();
+        int[] cellStart = grid.getCellStart();
+        int[] cellLights = grid.getCellLights();
+        int[] globalLights = grid.getGlobalLights();
+        int globalCount = grid.getGlobalCount();
+        float ambient = lights.getTotalAmbientIntensity() * ambientCoef * 0.2f;
+
+        for (int k = from; k < to; k++) {
+            int element = elements != null ? elements[k] : k;
+            int base = baseColors != null ? baseColors[element] : uniformColor;
+            int i = element * 3;
+
+            float nx = normals[i], ny = normals[i + 1], nz = normals[i + 2];
+            float cx = positions[i], cy = positions[i + 1], cz = positions[i + 2];
+
+            // Kolor bazowy, otoczenie i wkłady świateł w zasięgu; kanały obcinane do 255 na końcu
+            int baseR = (base >> 16) & 0xFF;
+            int baseG = (base >> 8) & 0xFF;
+            int baseB = base & 0xFF;
+            int r = baseR + toChannel(baseR / 255f * ambient);
+            int g = baseG + toChannel(baseG / 255f * ambient);
+            int b = baseB + toChannel(baseB / 255f * ambient);
+
+            for (int j = 0; j < globalCount; j++) {
+                int contribution = phongContribution(nx, ny, nz, cx, cy, cz, base, cameraX, cameraY, cameraZ,
+                        lightData, globalLights[j] * LightBuffer.STRIDE, 0);
+                r += (contribution >> 16) & 0xFF;
+                g += (contribution >> 8) & 0xFF;
+                b += contribution & 0xFF;
+            }
+
+            int cell = grid.cellIndex(cx, cy, cz);
+            if (cell >= 0) {
+                for (int j = cellStart[cell]; j < cellStart[cell + 1]; j++) {
+                    int offset = cellLights[j] * LightBuffer.STRIDE;
+                    float dx = lightData[offset] - cx;
+                    float dy = lightData[offset + 1] - cy;
+                    float dz = lightData[offset + 2] - cz;
+                    float radius = lightData[offset + LightBuffer.RADIUS];
+                    if (dx * dx + dy * dy + dz * dz > radius * radius) {
+                        continue;
+                    }
+
+                    int contribution = phongContribution(nx, ny, nz, cx, cy, cz, base, cameraX, cameraY, cameraZ,
+                            lightData, offset, 0);
+                    r += (contribution >> 16) & 0xFF;
+                    g += (contribution >> 8) & 0xFF;
+                    b += contribution & 0xFF;
+                }
+            }
+
+            out[k] = 0xFF000000 | (Math.min(255, r) << 16) | (Math.min(255, g) << 8) | Math.min(255, b);
+        }
+    }
 
-        SimpleMatrix viewVector = cameraPosition.minus(centroid);
-        SimpleMatrix viewDirection = normalizeVector(viewVector);
+    /**
+     * Wkład jednego światła spakowanego pod {@code light[offset]} w kolor punktu,
+     * jako ARGB z kanałami obciętymi do [0, 255]. {@code ambient} to gotowy współczynnik otoczenia.
+     */
+    private int phongContribution(float nx, float ny, float nz, float cx, float cy, float cz, int baseColor,
+                                  float cameraX, float cameraY, float cameraZ,
+                                  float[] light, int offset, float ambient) {
+        float lightR = light[offset + 3];
+        float lightG = light[offset + 4];
+        float lightB = light[offset + 5];
+        float intensity = light[offset + 6];
+
+        float lx = light[offset] - cx;
+        float ly = light[offset + 1] - cy;
+        float lz = light[offset + 2] - cz;
+        float distanceToLight = (float) Math.sqrt(lx * lx + ly * ly + lz * lz);
+        if (distanceToLight >= 1e-6f) {
+            lx /= distanceToLight;
+            ly /= distanceToLight;
+            lz /= distanceToLight;
+        }
 
-        float ambient = light.getAmbientIntensity() * ambientCoef * 0.2f;
+        float vx = cameraX - cx;
+        float vy = cameraY - cy;
+        float vz = cameraZ - cz;
+        float viewLength = (float) Math.sqrt(vx * vx + vy * vy + vz * vz);
+        if (viewLength >= 1e-6f) {
+            vx /= viewLength;
+            vy /= viewLength;
+            vz /= viewLength;
+        }
 
-        float constant = 1.0f;       // Stała wartość
-        float linear = 0.5f;         // Liniowe tłumienie
-        float quadratic = 0.2f;      // Kwadratowe tłumienie (fizycznie poprawne)
+        float constant = light[offset + 8];
+        float linear = light[offset + 9];
+        float quadratic = light[offset + 10];
 
         float attenuationFactor = 1.0f / (constant + linear * distanceToLight + quadratic * distanceToLight * distanceToLight);
 
         attenuationFactor = Math.min(1.0f, attenuationFactor);
 
-        float dotNL = (float) Math.max(0, dotProduct(normal, lightDirection));
-        float diffuse = dotNL * diffuseCoef * light.getIntensity() * attenuationFactor;
-
-        SimpleMatrix reflection = normal.scale(2 * dotNL).minus(lightDirection);
-        reflection = normalizeVector(reflection);
+        float dotNL = Math.max(0, nx * lx + ny * ly + nz * lz);
+        float diffuse = dotNL * diffuseCoef * intensity * attenuationFactor;
 
-        float dotRV = (float) Math.max(0, dotProduct(reflection, viewDirection));
         float specular = 0;
         if (dotNL > 0) {
-            specular = (float) Math.pow(dotRV, shininess) * specularCoef * light.getIntensity() * attenuationFactor;
+            float rx = nx * 2 * dotNL - lx;
+            float ry = ny * 2 * dotNL - ly;
+            float rz = nz * 2 * dotNL - lz;
+            float reflectionLength = (float) Math.sqrt(rx * rx + ry * ry + rz * rz);
+            if (reflectionLength >= 1e-6f) {
+                rx /= reflectionLength;
+                ry /= reflectionLength;
+                rz /= reflectionLength;
+            }
+
+            float dotRV = Math.max(0, rx * vx + ry * vy + rz * vz);
+            specular = power(dotRV, shininess) * specularCoef * intensity * attenuationFactor;
         }
 
-        float baseR = face.getColor().getRed() / 255f;
-        float baseG = face.getColor().getGreen() / 255f;
-        float baseB = face.getColor().getBlue() / 255f;
-
-        float r = baseR * ambient;
-        float g = baseG * ambient;
-        float b = baseB * ambient;
-
-        r += baseR * diffuse * light.getColor().getRed() / 255f;
-        g += baseG * diffuse * light.getColor().getGreen() / 255f;
-        b += baseB * diffuse * light.getColor().getBlue() / 255f;
-
-        float specR = specular * light.getColor().getRed() / 255f;
-        float specG = specular * light.getColor().getGreen() / 255f;
-        float specB = specular * light.getColor().getBlue() / 255f;
-
-        r += specR;
-        g += specG;
-        b += specB;
-
-        return new Color(clamp(r), clamp(g), clamp(b));
-    }
-    
-    private float vectorLength(SimpleMatrix vector) {
-        return (float) Math.sqrt(
-                vector.get(0) * vector.get(0) +
-                        vector.get(1) * vector.get(1) +
-                        vector.get(2) * vector.get(2)
-        );
-    }
-    private float clamp(float value) {
-        return Math.max(0, Math.min(1, value));
-    }
+        float baseR = ((baseColor >> 16) & 0xFF) / 255f;
+        float baseG = ((baseColor >> 8) & 0xFF) / 255f;
+        float baseB = (baseColor & 0xFF) / 255f;
 
-    private SimpleMatrix calculateFaceCentroid(Face face) {
-        SimpleMatrix centroid = new SimpleMatrix(3, 1);
-        int vertexCount = face.getEdges().size();
+        float r = baseR * ambient + baseR * diffuse * lightR + specular * lightR;
+        float g = baseG * ambient + baseG * diffuse * lightG + specular * lightG;
+        float b = baseB * ambient + baseB * diffuse * lightB + specular * lightB;
 
-        for (int i = 0; i < vertexCount; i++) {
-            centroid = centroid.plus(face.getEdges().get(i).getStart());
-        }
-
-        return centroid.scale(1.0f / vertexCount);
+        return 0xFF000000 | (toChannel(r) << 16) | (toChannel(g) << 8) | toChannel(b);
     }
 
-    private SimpleMatrix normalizeVector(SimpleMatrix vector) {
-        float length = (float) Math.sqrt(
-                vector.get(0) * vector.get(0) +
-                        vector.get(1) * vector.get(1) +
-                        vector.get(2) * vector.get(2)
-        );
-
-        if (length < 1e-6f) {
-            return vector;
+    /**
+     * Potęga całkowita przez podnoszenie do kwadratu, zamiast {@link Math#pow}.
+     */
+    private static float power(float base, int exponent) {
+        float result = 1;
+        while (exponent > 0) {
+            if ((exponent & 1) != 0) {
+                result *= base;
+            }
+            base *= base;
+            exponent >>= 1;
         }
-
-        return vector.scale(1.0f / length);
+        return result;
     }
 
-    private double dotProduct(SimpleMatrix a, SimpleMatrix b) {
-        return a.get(0) * b.get(0) + a.get(1) * b.get(1) + a.get(2) * b.get(2);
+    // Zaokrąglenie jak w konstruktorze Color(float, float, float)
+    private static int toChannel(float value) {
+        return (int) (Math.max(0, Math.min(1, value)) * 255 + 0.5f);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,36 @@
+package src.raster;
+
+import lombok.Getter;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Arrays;
+
+/**
+ * Bufor koloru oparty na {@link BufferedImage} (piksele ARGB dostępne jako int[])
+ * oraz bufor głębokości przechowujący 1/w dla każdego piksela.
+ * Wyczyszczony bufor jest przezroczysty, więc po skopiowaniu na ekran widać
+ * wszystko, co zostało narysowane wcześniej (tło, źródła światła).
+ */
+@Getter
+public class FrameBuffer {
+    private final int width;
+    private final int height;
+    private final BufferedImage image;
+    private final int[] color;
+    private final float[] depth;
+
+    public FrameBuffer(int width, int height) {
+        this.width = width;
+        this.height = height;
+        this.image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+        this.color = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        this.depth = new float[width * height];
+    }
+
+    public void clear() {
+        Arrays.fill(color, 0);
+        // 1/w = 0 odpowiada punktowi w nieskończoności
+        Arrays.fill(depth, 0.0f);
+    }
+}
@@ -0,0 +1,117 @@
+package src.raster;
+
+import lombok.Getter;
+
+/**
+ * Rasteryzacja trójkątów do {@link FrameBuffer} z testem głębokości.
+ * <p>
+ * Głębokością jest 1/w, które zmienia się liniowo w przestrzeni ekranu, więc
+ * interpolacja współrzędnymi barycentrycznymi ekranu daje wynik poprawny perspektywicznie.
+ * Większe 1/w oznacza punkt bliżej kamery. Próbkowane są środki pikseli,
+ * a krawędzie wspólne dla dwóch trójkątów są przypisywane tylko jednemu z nich.
+ */
+@Getter
+public class Rasterizer {
+    private final FrameBuffer target;
+
+    public Rasterizer(FrameBuffer target) {
+        this.target = target;
+    }
+
+    /**
+     * Wierzchołki są podawane jako współrzędne ekranowe (x, y) i wartość 1/w.
+     */
+    public void fillTriangle(float x0, float y0, float d0,
+                             float x1, float y1, float d1,
+                             float x2, float y2, float d2,
+                             int argb) {
+        fillTriangle(x0, y0, d0, x1, y1, d1, x2, y2, d2, argb,
+                0, 0, target.getWidth(), target.getHeight());
+    }
+
+    /**
+     * Jak {@link #fillTriangle(float, float, float, float, float, float, float, float, float, int)},
+     * ale zapisuje tylko piksele z prostokąta [minX, maxX) x [minY, maxY).
+     */
+    public void fillTriangle(float x0, float y0, float d0,
+                             float x1, float y1, float d1,
+                             float x2, float y2, float d2,
+                             int argb, int clipMinX, int clipMinY, int clipMaxX, int clipMaxY) {
+        float area = (x1 - x0) * (y2 - y0) - (y1 - y0) * (x2 - x0);
+        if (area == 0 || Float.isNaN(area)) {
+            return;
+        }
+
+        // Ujednolicenie orientacji, żeby wnętrze trójkąta miało dodatnie funkcje krawędzi
+        if (area < 0) {
+            float tx = x1, ty = y1, td = d1;
+            x1 = x2; y1 = y2; d1 = d2;
+            x2 = tx; y2 = ty; d2 = td;
+            area = -area;
+        }
+
+        int minX = Math.max(clipMinX, (int) Math.floor(Math.min(x0, Math.min(x1, x2))));
+        int maxX = Math.min(clipMaxX - 1, (int) Math.ceil(Math.max(x0, Math.max(x1, x2))));
+        int minY = Math.max(clipMinY, (int) Math.floor(Math.min(y0, Math.min(y1, y2))));
+        int maxY = Math.min(clipMaxY - 1, (int) Math.ceil(Math.max(y0, Math.max(y1, y2))));
+
+        if (minX > maxX || minY > maxY) {
+            return;
+        }
+
+        // Krawędź 1->2 leży naprzeciw wierzchołka 0, 2->0 naprzeciw 1, 0->1 naprzeciw 2
+        float dx12 = x2 - x1, dy12 = y2 - y1;
+        float dx20 = x0 - x2, dy20 = y0 - y2;
+        float dx01 = x1 - x0, dy01 = y1 - y0;
+
+        boolean inclusive12 = isTopLeft(dx12, dy12);
+        boolean inclusive20 = isTopLeft(dx20, dy20);
+        boolean inclusive01 = isTopLeft(dx01, dy01);
+
+        float invArea = 1.0f / area;
+        int width = target.getWidth();
+        int[] color = target.getColor();
+        float[] depth = target.getDepth();
+
+        for (int y = minY; y <= maxY; y++) {
+            float py = y + 0.5f;
+            float row12 = dx12 * (py - y1);
+            float row20 = dx20 * (py - y2);
+            float row01 = dx01 * (py - y0);
+            int rowOffset = y * width;
+
+            for (int x = minX; x <= maxX; x++) {
+                float px = x + 0.5f;
+
+                float e12 = row12 - dy12 * (px - x1);
+                if (e12 < 0 || (e12 == 0 && !inclusive12)) {
+                    continue;
+                }
+                float e20 = row20 - dy20 * (px - x2);
+                if (e20 < 0 || (e20 == 0 && !inclusive20)) {
+                    continue;
+                }
+                float e01 = row01 - dy01 * (px - x0);
+                if (e01 < 0 || (e01 == 0 && !inclusive01)) {
+                    continue;
+                }
+
+                float d = (e12 * d0 + e20 * d1 + e01 * d2) * invArea;
+                int index = rowOffset + x;
+
+                if (d > depth[index]) {
+                    depth[index] = d;
+                    color[index] = argb;
+                }
+            }
+        }
+    }
+
+    /**
+     * Reguła lewej górnej krawędzi przy osi y skierowanej w dół i dodatniej orientacji trójkąta:
+     * krawędź lewa biegnie w górę ekranu (dy < 0), a górna jest pozioma i biegnie w prawo.
+     */
+    private static boolean isTopLeft(float dx, float dy) {
+        return dy < 0 || (dy == 0 && dx > 0);
+    }
+}
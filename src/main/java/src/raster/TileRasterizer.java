@@ -0,0 +1,167 @@
+package src.raster;
+
+import lombok.Getter;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Rasteryzacja równoległa: ekran jest dzielony na kafelki, trójkąty są przypisywane
+ * do kafelków według prostokąta otaczającego, a kafelki są rasteryzowane niezależnie
+ * w puli ForkJoin. Każdy piksel należy do dokładnie jednego kafelka i widzi trójkąty
+ * w kolejności przekazania, więc wynik jest identyczny z rasteryzacją jednowątkową.
+ */
+@Getter
+public class TileRasterizer {
+    public static final int DEFAULT_TILE_SIZE = 32;
+
+    // Liczba kafelków, poniżej której zadanie nie jest dalej dzielone
+    private static final int TILES_PER_TASK = 4;
+
+    private final FrameBuffer target;
+    private final Rasterizer rasterizer;
+    private final int tileSize;
+    private final int tilesX;
+    private final int tilesY;
+    private final ForkJoinPool pool;
+
+    private final int[][] tileTriangles;
+    private final int[] tileCounts;
+
+    public TileRasterizer(FrameBuffer target, int tileSize, ForkJoinPool pool) {
+        if (tileSize <= 0) {
+            throw new IllegalArgumentException("Tile size must be positive");
+        }
+
+        this.target = target;
+        this.rasterizer = new Rasterizer(target);
+        this.tileSize = tileSize;
+        this.tilesX = (target.getWidth() + tileSize - 1) / tileSize;
+        this.tilesY = (target.getHeight() + tileSize - 1) / tileSize;
+        this.pool = pool;
+
+        this.tileTriangles = new int[tilesX * tilesY][];
+        this.tileCounts = new int[tilesX * tilesY];
+        for (int i = 0; i < tileTriangles.length; i++) {
+            tileTriangles[i] = new int[64];
+        }
+    }
+
+    public TileRasterizer(FrameBuffer target) {
+        this(target, DEFAULT_TILE_SIZE, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Rasteryzuje wszystkie trójkąty z bufora w kafelkach, równolegle.
+     */
+    public void rasterize(TriangleBuffer triangles) {
+        binTriangles(triangles);
+        pool.invoke(new TileTask(triangles, 0, tileCounts.length));
+    }
+
+    /**
+     * Rasteryzuje wszystkie trójkąty na bieżącym wątku, bez podziału na kafelki.
+     */
+    public void rasterizeSerial(TriangleBuffer triangles) {
+        float[] v = triangles.getVertices();
+        int[] colors = triangles.getColors();
+
+        for (int t = 0; t < triangles.getSize(); t++) {
+            int o = t * TriangleBuffer.STRIDE;
+            rasterizer.fillTriangle(v[o], v[o + 1], v[o + 2], v[o + 3], v[o + 4], v[o + 5],
+                    v[o + 6], v[o + 7], v[o + 8], colors[t]);
+        }
+    }
+
+    private void binTriangles(TriangleBuffer triangles) {
+        Arrays.fill(tileCounts, 0);
+
+        float[] v = triangles.getVertices();
+        int width = target.getWidth();
+        int height = target.getHeight();
+
+        for (int t = 0; t < triangles.getSize(); t++) {
+            int o = t * TriangleBuffer.STRIDE;
+            float minXf = Math.min(v[o], Math.min(v[o + 3], v[o + 6]));
+            float maxXf = Math.max(v[o], Math.max(v[o + 3], v[o + 6]));
+            float minYf = Math.min(v[o + 1], Math.min(v[o + 4], v[o + 7]));
+            float maxYf = Math.max(v[o + 1], Math.max(v[o + 4], v[o + 7]));
+
+            // Odrzuca też trójkąty z NaN, dla których wszystkie porównania są fałszywe
+            if (!(maxXf >= 0 && minXf < width && maxYf >= 0 && minYf < height)) {
+                continue;
+            }
+
+            int minX = Math.max(0, (int) Math.floor(minXf));
+            int maxX = Math.min(width - 1, (int) Math.ceil(maxXf));
+            int minY = Math.max(0, (int) Math.floor(minYf));
+            int maxY = Math.min(height - 1, (int) Math.ceil(maxYf));
+
+            for (int ty = minY / tileSize; ty <= maxY / tileSize; ty++) {
+                for (int tx = minX / tileSize; tx <= maxX / tileSize; tx++) {
+                    addToTile(ty * tilesX + tx, t);
+                }
+            }
+        }
+    }
+
+    private void addToTile(int tile, int triangle) {
+        int[] list = tileTriangles[tile];
+        if (tileCounts[tile] == list.length) {
+            int[] grown = new int[list.length * 2];
+            System.arraycopy(list, 0, grown, 0, list.length);
+            tileTriangles[tile] = grown;
+            list = grown;
+        }
+        list[tileCounts[tile]++] = triangle;
+    }
+
+    private void rasterizeTile(TriangleBuffer triangles, int tile) {
+        int count = tileCounts[tile];
+        if (count == 0) {
+            return;
+        }
+
+        int minX = (tile % tilesX) * tileSize;
+        int minY = (tile / tilesX) * tileSize;
+        int maxX = Math.min(target.getWidth(), minX + tileSize);
+        int maxY = Math.min(target.getHeight(), minY + tileSize);
+
+        float[] v = triangles.getVertices();
+        int[] colors = triangles.getColors();
+        int[] list = tileTriangles[tile];
+
+        for (int i = 0; i < count; i++) {
+            int t = list[i];
+            int o = t * TriangleBuffer.STRIDE;
+            rasterizer.fillTriangle(v[o], v[o + 1], v[o + 2], v[o + 3], v[o + 4], v[o + 5],
+                    v[o + 6], v[o + 7], v[o + 8], colors[t], minX, minY, maxX, maxY);
+        }
+    }
+
+    private class TileTask extends RecursiveAction {
+        private final TriangleBuffer triangles;
+        private final int from;
+        private final int to;
+
+        TileTask(TriangleBuffer triangles, int from, int to) {
+            this.triangles = triangles;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= TILES_PER_TASK) {
+                for (int tile = from; tile < to; tile++) {
+                    rasterizeTile(triangles, tile);
+                }
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(new TileTask(triangles, from, middle), new TileTask(triangles, middle, to));
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package src.raster;
+
+import lombok.Getter;
+
+/**
+ * Lista trójkątów przekazanych w bieżącej klatce, zapisana w tablicach prymitywnych:
+ * 9 liczb (x, y, 1/w dla trzech wierzchołków) i jeden kolor ARGB na trójkąt.
+ * Kolejność dodawania jest zachowywana, bo rozstrzyga remisy w teście głębokości.
+ */
+@Getter
+public class TriangleBuffer {
+    public static final int STRIDE = 9;
+
+    private float[] vertices = new float[STRIDE * 256];
+    private int[] colors = new int[256];
+    private int size;
+
+    public void add(float x0, float y0, float d0,
+                    float x1, float y1, float d1,
+                    float x2, float y2, float d2,
+                    int argb) {
+        if (size == colors.length) {
+            grow();
+        }
+
+        int offset = size * STRIDE;
+        vertices[offset] = x0;
+        vertices[offset + 1] = y0;
+        vertices[offset + 2] = d0;
+        vertices[offset + 3] = x1;
+        vertices[offset + 4] = y1;
+        vertices[offset + 5] = d1;
+        vertices[offset + 6] = x2;
+        vertices[offset + 7] = y2;
+        vertices[offset + 8] = d2;
+        colors[size] = argb;
+        size++;
+    }
+
+    public void clear() {
+        size = 0;
+    }
+
+    private void grow() {
+        float[] newVertices = new float[vertices.length * 2];
+        System.arraycopy(vertices, 0, newVertices, 0, vertices.length);
+        vertices = newVertices;
+
+        int[] newColors = new int[colors.length * 2];
+        System.arraycopy(colors, 0, newColors, 0, colors.length);
+        colors = newColors;
+    }
+}
@@ -0,0 +1,182 @@
+package src.bsp;
+
+import org.ejml.simple.SimpleMatrix;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import src.Edge;
+import src.Face;
+import src.Sphere;
+import src.Surface;
+
+import java.awt.Color;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BSPTreeFileTest {
+    private static final int HEADER_BYTES = 8 * 4 + 8;
+
+    @TempDir
+    Path directory;
+
+    private List<Face> faces;
+    private Surface[] surfaces;
+    private BSPTree tree;
+    private FlatBSPTree built;
+    private long key;
+    private Path file;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        // Przecinające się sfery, żeby drzewo zawierało ściany powstałe z podziału
+        faces = new ArrayList<>();
+        faces.addAll(new Sphere(0.0f, 0.0f, 4.0f, 1.5f, 8, 8, Color.RED).getFaces());
+        faces.addAll(new Sphere(0.8f, 0.3f, 4.5f, 1.2f, 8, 8, Color.BLUE).getFaces());
+
+        surfaces = BSPTreeFile.surfacesOf(faces);
+        key = BSPTreeFile.sceneKey(faces, surfaces, SplitterHeuristic.BALANCED);
+        tree = new BSPTree(new ArrayList<>(faces), SplitterHeuristic.BALANCED, false);
+        built = new FlatBSPTree(tree);
+        file = directory.resolve("tree.bin");
+        BSPTreeFile.write(file, built, tree.getStats(), surfaces, key);
+    }
+
+    @Test
+    void roundTripMatchesBuiltTree() throws IOException {
+        BSPStats stats = new BSPStats();
+        FlatBSPTree loaded = BSPTreeFile.load(file, surfaces, key, stats);
+
+        assertNotNull(loaded);
+        assertTrue(tree.getStats().getSplitCount() > 0);
+        assertEquals(built.getNodeCount(), loaded.getNodeCount());
+        assertEquals(built.getTotalFaceCount(), loaded.getTotalFaceCount());
+        assertEquals(tree.getStats().getSplitCount(), stats.getSplitCount());
+        assertEquals(tree.getStats().getMaxDepth(), stats.getMaxDepth());
+
+        assertArrayEquals(floats(built.getPlanes()), floats(loaded.getPlanes()));
+        assertArrayEquals(ints(built.getFront()), ints(loaded.getFront()));
+        assertArrayEquals(ints(built.getBack()), ints(loaded.getBack()));
+        assertArrayEquals(ints(built.getFaceStart()), ints(loaded.getFaceStart()));
+        assertArrayEquals(ints(built.getFaceCount()), ints(loaded.getFaceCount()));
+        assertArrayEquals(floats(built.getBounds()), floats(loaded.getBounds()));
+        assertArrayEquals(floats(built.getFacePlanes()), floats(loaded.getFacePlanes()));
+
+        for (int i = 0; i < built.getTotalFaceCount(); i++) {
+            Face expected = built.getFace(i);
+            Face actual = loaded.getFace(i);
+            assertArrayEquals(vertices(expected), vertices(actual), "face " + i);
+            assertSame(expected.getSurface(), actual.getSurface(), "face " + i);
+        }
+    }
+
+    @Test
+    void loadRejectsWrongSceneKey() throws IOException {
+        assertNull(BSPTreeFile.load(file, surfaces, key + 1, null));
+    }
+
+    @Test
+    void loadRejectsPaletteSizeMismatch() throws IOException {
+        Surface[] larger = Arrays.copyOf(surfaces, surfaces.length + 1);
+        larger[surfaces.length] = new Surface(Color.GREEN);
+
+        assertNull(BSPTreeFile.load(file, larger, key, null));
+    }
+
+    @Test
+    void loadRejectsTruncatedFile() throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 4);
+        }
+        assertNull(BSPTreeFile.load(file, surfaces, key, null));
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(16);
+        }
+        assertNull(BSPTreeFile.load(file, surfaces, key, null));
+    }
+
+    @Test
+    void loadRejectsCorruptedBody() throws IOException {
+        int nodes = built.getNodeCount();
+        long front = HEADER_BYTES + nodes * 4L * 4;
+        long faceStart = front + nodes * 4L * 2;
+        long faceSurfaces = Files.size(file) - built.getTotalFaceCount() * 4L;
+
+        overwriteInt(front, nodes);
+        assertNull(BSPTreeFile.load(file, surfaces, key, null), "child out of range");
+
+        BSPTreeFile.write(file, built, tree.getStats(), surfaces, key);
+        overwriteInt(front + 4, 0);
+        assertNull(BSPTreeFile.load(file, surfaces, key, null), "child pointing back to the root");
+
+        BSPTreeFile.write(file, built, tree.getStats(), surfaces, key);
+        overwriteInt(faceStart, built.getTotalFaceCount());
+        assertNull(BSPTreeFile.load(file, surfaces, key, null), "face range past the end");
+
+        BSPTreeFile.write(file, built, tree.getStats(), surfaces, key);
+        overwriteInt(faceSurfaces, surfaces.length);
+        assertNull(BSPTreeFile.load(file, surfaces, key, null), "surface index out of range");
+
+        BSPTreeFile.write(file, built, tree.getStats(), surfaces, key);
+        assertNotNull(BSPTreeFile.load(file, surfaces, key, null));
+    }
+
+    @Test
+    void loadReturnsNullForMissingFile() throws IOException {
+        Files.delete(file);
+
+        assertNull(BSPTreeFile.load(file, surfaces, key, null));
+    }
+
+    private void overwriteInt(long position, int value) throws IOException {
+        ByteBuffer bytes = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN).putInt(0, value);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(bytes, position);
+        }
+    }
+
+    private static float[] floats(FloatBuffer buffer) {
+        float[] values = new float[buffer.limit()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = buffer.get(i);
+        }
+        return values;
+    }
+
+    private static int[] ints(IntBuffer buffer) {
+        int[] values = new int[buffer.limit()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = buffer.get(i);
+        }
+        return values;
+    }
+
+    private static float[] vertices(Face face) {
+        List<Edge> edges = face.getEdges();
+        float[] values = new float[edges.size() * 3];
+        for (int i = 0; i < edges.size(); i++) {
+            SimpleMatrix vertex = edges.get(i).getStart();
+            values[i * 3] = (float) vertex.get(0);
+            values[i * 3 + 1] = (float) vertex.get(1);
+            values[i * 3 + 2] = (float) vertex.get(2);
+        }
+        return values;
+    }
+}
@@ -0,0 +1,83 @@
+package src.bsp;
+
+import org.ejml.simple.SimpleMatrix;
+import org.junit.jupiter.api.Test;
+import src.Edge;
+import src.Face;
+import src.Sphere;
+
+import java.awt.Color;
+import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BSPTreeTest {
+    @Test
+    void parallelBuildMatchesSerialBuild() {
+        // Nachodzące na siebie sfery: ponad 2048 ścian, więc równoległa jest też klasyfikacja
+        List<Face> faces = new ArrayList<>();
+        Color[] colors = {Color.RED, Color.GREEN, Color.BLUE, Color.GRAY};
+        for (int i = 0; i < colors.length; i++) {
+            faces.addAll(new Sphere(i * 0.8f, 0.0f, 4.0f, 1.5f, 24, 24, colors[i]).getFaces());
+        }
+        assertTrue(faces.size() > 2048);
+
+        for (SplitterHeuristic heuristic : SplitterHeuristic.PRESETS) {
+            BSPTree serialTree = new BSPTree(new ArrayList<>(faces), heuristic, false);
+            BSPTree parallelTree = new BSPTree(new ArrayList<>(faces), heuristic, true);
+            String name = heuristic.getName();
+
+            assertEquals(serialTree.getStats().getNodeCount(), parallelTree.getStats().getNodeCount(), name);
+            assertEquals(serialTree.getStats().getSplitCount(), parallelTree.getStats().getSplitCount(), name);
+            assertEquals(serialTree.getStats().getMaxDepth(), parallelTree.getStats().getMaxDepth(), name);
+
+            FlatBSPTree serial = new FlatBSPTree(serialTree);
+            FlatBSPTree parallel = new FlatBSPTree(parallelTree);
+            assertArrayEquals(floats(serial.getPlanes()), floats(parallel.getPlanes()), name);
+            assertArrayEquals(ints(serial.getFront()), ints(parallel.getFront()), name);
+            assertArrayEquals(ints(serial.getBack()), ints(parallel.getBack()), name);
+            assertArrayEquals(ints(serial.getFaceStart()), ints(parallel.getFaceStart()), name);
+            assertArrayEquals(ints(serial.getFaceCount()), ints(parallel.getFaceCount()), name);
+
+            assertEquals(serial.getTotalFaceCount(), parallel.getTotalFaceCount(), name);
+            for (int i = 0; i < serial.getTotalFaceCount(); i++) {
+                assertArrayEquals(vertices(serial.getFace(i)), vertices(parallel.getFace(i)), name + " face " + i);
+                assertSame(serial.getFace(i).getSurface(), parallel.getFace(i).getSurface(), name + " face " + i);
+            }
+        }
+    }
+
+    private static float[] floats(FloatBuffer buffer) {
+        float[] values = new float[buffer.limit()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = buffer.get(i);
+        }
+        return values;
+    }
+
+    private static int[] ints(IntBuffer buffer) {
+        int[] values = new int[buffer.limit()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = buffer.get(i);
+        }
+        return values;
+    }
+
+    private static float[] vertices(Face face) {
+        List<Edge> edges = face.getEdges();
+        float[] values = new float[edges.size() * 3];
+        for (int i = 0; i < edges.size(); i++) {
+            SimpleMatrix vertex = edges.get(i).getStart();
+            values[i * 3] = (float) vertex.get(0);
+            values[i * 3 + 1] = (float) vertex.get(1);
+            values[i * 3 + 2] = (float) vertex.get(2);
+        }
+        return values;
+    }
+}
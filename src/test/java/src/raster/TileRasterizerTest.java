@@ -0,0 +1,95 @@
+package src.raster;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TileRasterizerTest {
+    private static final int WIDTH = 203;
+    private static final int HEIGHT = 157;
+    private static final int TILE_SIZE = 16;
+
+    @Test
+    void parallelTilesMatchSerialRasterization() {
+        TriangleBuffer triangles = new TriangleBuffer();
+        addGrid(triangles);
+        addRandomTriangles(triangles, new Random(7));
+
+        FrameBuffer serial = new FrameBuffer(WIDTH, HEIGHT);
+        FrameBuffer tiled = new FrameBuffer(WIDTH, HEIGHT);
+        serial.clear();
+        tiled.clear();
+
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            new TileRasterizer(serial, TILE_SIZE, pool).rasterizeSerial(triangles);
+            new TileRasterizer(tiled, TILE_SIZE, pool).rasterize(triangles);
+        } finally {
+            pool.shutdown();
+        }
+
+        assertArrayEquals(serial.getColor(), tiled.getColor());
+        assertArrayEquals(serial.getDepth(), tiled.getDepth());
+    }
+
+    @Test
+    void sharedEdgesLeaveNoGapsAcrossTileBorders() {
+        TriangleBuffer triangles = new TriangleBuffer();
+        addGrid(triangles);
+
+        FrameBuffer tiled = new FrameBuffer(WIDTH, HEIGHT);
+        tiled.clear();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            new TileRasterizer(tiled, TILE_SIZE, pool).rasterize(triangles);
+        } finally {
+            pool.shutdown();
+        }
+
+        // Siatka pokrywa cały obraz, więc każdy piksel musi zostać zapisany
+        for (int color : tiled.getColor()) {
+            assertTrue(color != 0);
+        }
+    }
+
+    /**
+     * Siatka kwadratów dzielonych przekątną, o krawędziach w ułamkowych pozycjach i przecinających
+     * granice kafelków; wychodzi poza obraz z każdej strony.
+     */
+    private static void addGrid(TriangleBuffer triangles) {
+        float step = 13.37f;
+        int index = 0;
+        for (float y = -7.3f; y < HEIGHT; y += step) {
+            for (float x = -5.1f; x < WIDTH; x += step) {
+                float d = 0.5f + 0.001f * (index % 97);
+                int color = 0xFF000000 | ((index * 0x9E3779B1) >>> 8) | 0x010101;
+                triangles.add(x, y, d, x + step, y, d, x + step, y + step, d, color);
+                triangles.add(x, y, d, x + step, y + step, d, x, y + step, d, color ^ 0x00FF00);
+                index++;
+            }
+        }
+    }
+
+    /**
+     * Nakładające się trójkąty o różnej głębokości, także zdegenerowane i sięgające poza obraz.
+     */
+    private static void addRandomTriangles(TriangleBuffer triangles, Random random) {
+        for (int i = 0; i < 300; i++) {
+            float x = random.nextFloat() * (WIDTH + 80) - 40;
+            float y = random.nextFloat() * (HEIGHT + 80) - 40;
+            float size = 4 + random.nextFloat() * 90;
+            float d0 = random.nextFloat();
+            float d1 = random.nextFloat();
+            float d2 = random.nextFloat();
+            triangles.add(x, y, d0,
+                    x + random.nextFloat() * size, y + random.nextFloat() * size, d1,
+                    x - random.nextFloat() * size, y + random.nextFloat() * size, d2,
+                    0xFF000000 | random.nextInt(0x1000000));
+        }
+        triangles.add(10, 10, 1, 20, 20, 1, 30, 30, 1, 0xFFFF0000);
+    }
+}